@@ -1,8 +1,6 @@
 package org.gosparx;
 
 import edu.wpi.first.wpilibj.AnalogChannel;
-import edu.wpi.first.wpilibj.DriverStation;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import org.gosparx.subsystem.Acquisitions;
@@ -10,6 +8,9 @@ import org.gosparx.subsystem.Drives;
 import org.gosparx.subsystem.GenericSubsystem;
 import org.gosparx.subsystem.Shooter;
 import org.gosparx.subsystem.Vision;
+import org.gosparx.util.DashboardPublisher;
+import org.gosparx.util.LcdDisplay;
+import org.gosparx.util.LogLimit;
 import org.gosparx.util.Logger;
 
 public class Autonomous extends GenericSubsystem {
@@ -90,6 +91,11 @@ public class Autonomous extends GenericSubsystem {
      */
     private String selectedAutoName = "UNKNOWN";
 
+    /**
+     * Waiting for drives is logged every loop, so it is rate limited.
+     */
+    private final LogLimit waitLogLimit = log.limit("Auto.wait", 1, 1);
+
     /**
      * Wanted auto mode for autonomous
      */
@@ -111,6 +117,16 @@ public class Autonomous extends GenericSubsystem {
      * if we are using smartdashboard to choose an automode.
      */
     private String smartChooser = "Use SmartDashboard";
+    
+    /**
+     * The {@link DashboardPublisher} handle for the selected auto name.
+     */
+    private int selectedAutoKey = -1;
+
+    /**
+     * The {@link LcdDisplay} handle for the current step and its command.
+     */
+    private int autoStepLine = -1;
 
     /**
      * The length of the current autonomous
@@ -122,6 +138,12 @@ public class Autonomous extends GenericSubsystem {
      */
     private boolean increaseI = false;
 
+    /**
+     * The shooter's shot count when the current SHOOTER_SHOOT step started,
+     * or -1 when not in one.
+     */
+    private int shotCountBefore = -1;
+
     /**
      * The time at which autonomous starts
      */
@@ -190,6 +212,7 @@ public class Autonomous extends GenericSubsystem {
     private static final int VISION_DISTANCE = 30;
     private static final int VISION_ANGLE = 31;
     private static final int VISION_HOT_TARGET = 32;
+    private static final int VISION_READY = 33;
 
     private static final int DRIVES_TRACK_TARGET = 40;
 
@@ -270,10 +293,11 @@ public class Autonomous extends GenericSubsystem {
     private static final int[][] oneBallInHotHigh = {
         {ACQ_READY},
         {SHOOTER_READY},
-        {TEST_SECONDS_LEFT, 7, 7},
+        {TEST_SECONDS_LEFT, 7, 8},
         {SHOOTER_SET_PRESET, Acquisitions.AcqState.FAR_SHOOTER_PRESET},
         {SHOOTER_READY_TO_SHOOT},
         {WAIT, 1000},
+        {VISION_READY},
         {VISION_HOT_TARGET},
         {SHOOTER_SHOOT},
         {DRIVES_GO_FORWARD, 60, 30},
@@ -386,6 +410,7 @@ public class Autonomous extends GenericSubsystem {
         finished = currentAutonomous.length;
         increaseI = true;
         if (ds.isEnabled() && runAutonomous) {
+            LcdDisplay.getInstance().setStatus(autoStepLine, currentAutoStep, currentAutonomous[currentAutoStep][0]);
             switch (currentAutonomous[currentAutoStep][0]) {
                 case DRIVES_GO_FORWARD:
                     log.logMessage("Auto Drives Foward");
@@ -407,7 +432,9 @@ public class Autonomous extends GenericSubsystem {
 
                     break;
                 case DRIVES_DONE:
-                    log.logMessage("Auto Waiting for Drives");
+                    if(log.allow(waitLogLimit)){
+                        log.logMessage("Auto Waiting for Drives");
+                    }
                     runNextStatement(drives.isLastCommandDone());
                     break;
                 case ACQ_READY:
@@ -431,10 +458,17 @@ public class Autonomous extends GenericSubsystem {
                     runNextStatement(acq.isLastCommandDone(currentAutonomous[currentAutoStep][1]));
                     break;
                 case SHOOTER_SHOOT:
-                    log.logMessage("Shoting Ball");
-                    if(shooter.shoot()){
+                    //Only move on once the shooter has really fired, it can
+                    //refuse a shot after shoot() returned
+                    if(shotCountBefore == -1){
+                        log.logMessage("Shoting Ball");
+                        shotCountBefore = shooter.getShotCount();
+                    }
+                    if(shooter.getShotCount() != shotCountBefore){
+                        shotCountBefore = -1;
                         runNextStatement(true);
                     }else{
+                        shooter.shoot();
                         runNextStatement(false);
                     }
                     break;
@@ -464,6 +498,9 @@ public class Autonomous extends GenericSubsystem {
                     runNextStatement(vision.isHotGoal());
                     log.logMessage("See Hot Goal: " + vision.isHotGoal());
                     break;
+                case VISION_READY:
+                    runNextStatement(vision.isCameraReady());
+                    break;
                 case TEST_SECONDS_LEFT:
                     checkTime = true;
                     critalTime = currentAutonomous[currentAutoStep][1];
@@ -502,7 +539,7 @@ public class Autonomous extends GenericSubsystem {
 
 
             //Makes sure we have enough time left to move
-            if (checkTime && Timer.getFPGATimestamp() - startAutoTime >= critalTime && currentAutoStep < criticalTimeAction) {
+            if (checkTime && now() - startAutoTime >= critalTime && currentAutoStep < criticalTimeAction) {
                 currentAutoStep = criticalTimeAction;
                 log.logMessage("Going to Critical Stip");
                 checkTime = false;
@@ -520,6 +557,14 @@ public class Autonomous extends GenericSubsystem {
         shooter = Shooter.getInstance();
     }
 
+    /**
+     * Autonomous commands Drives, Vision, Acquisitions and Shooter.
+     */
+    protected GenericSubsystem[] getDependencies() {
+        return new GenericSubsystem[]{Drives.getInstance(), Vision.getInstance(), 
+            Acquisitions.getInstance(), Shooter.getInstance()};
+    }
+
     /**
      * Main run method. Called by GenericSubsystem
      *
@@ -530,8 +575,9 @@ public class Autonomous extends GenericSubsystem {
             runAutonomous();
         } else {
             getAutoMode();
-            startAutoTime = Timer.getFPGATimestamp();
+            startAutoTime = now();
             currentAutoStep = 0;
+            shotCountBefore = -1;
         }
     }
 
@@ -559,7 +605,7 @@ public class Autonomous extends GenericSubsystem {
      * @param autoName - the name of the current autonomous mode
      */
     private void sendSmartAuto(String autoName) {
-        SmartDashboard.putString("Selected Auto Mode: ", autoName);
+        DashboardPublisher.getInstance().setString(selectedAutoKey, autoName);
         smartAutoMode = SmartDashboard.getBoolean(smartChooser);
     }
 
@@ -579,11 +625,20 @@ public class Autonomous extends GenericSubsystem {
         smartChoose.addObject("Auto 7", new Integer(8));
         SmartDashboard.putData("Auto Mode", smartChoose);
         SmartDashboard.putBoolean(smartChooser, false);
+        selectedAutoKey = DashboardPublisher.getInstance().addString("Selected Auto Mode: ", NO_AUTO_NAME);
+        autoStepLine = LcdDisplay.getInstance().addStatus("Auto step {i} cmd {i}");
     }
 
     public int sleepTime() {
         return 20;
     }
+    
+    /**
+     * WAIT sleeps inside execute(), so those loops are not overruns.
+     */
+    protected int periodPolicy() {
+        return PERIOD_FIXED_SLEEP;
+    }
 
     /**
      * No regular info to log about autonomous.
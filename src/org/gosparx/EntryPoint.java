@@ -3,12 +3,20 @@ package org.gosparx;
 import edu.wpi.first.wpilibj.SimpleRobot;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
+import org.gosparx.sensors.SensorSampler;
 import org.gosparx.subsystem.Acquisitions;
 import org.gosparx.subsystem.Controls;
 import org.gosparx.subsystem.Drives;
 import org.gosparx.subsystem.GenericSubsystem;
+import org.gosparx.subsystem.Scheduler;
 import org.gosparx.subsystem.Shooter;
+import org.gosparx.subsystem.SubsystemInitializer;
 import org.gosparx.subsystem.Vision;
+import org.gosparx.subsystem.Watchdog;
+import org.gosparx.util.DashboardPublisher;
+import org.gosparx.util.DriverStationSnapshot;
+import org.gosparx.util.ImageWriter;
+import org.gosparx.util.LcdDisplay;
 import org.gosparx.util.LogWriter;
 import org.gosparx.util.Logger;
 
@@ -20,10 +28,32 @@ import org.gosparx.util.Logger;
  * directory.
  */
 public class EntryPoint extends SimpleRobot {
+    /**
+     * If true the control subsystems run from one {@link Scheduler} thread 
+     * instead of one thread each.
+     */
+    private static final boolean USE_SCHEDULER = false;
+    
     /**
      * The list of all the subsystems.
      */
     private GenericSubsystem[] subsystems;
+    
+    /**
+     * Runs the control subsystems when {@link #USE_SCHEDULER} is true.
+     */
+    private Scheduler scheduler;
+    
+    /**
+     * The number of periods a subsystem may miss before the watchdog forces
+     * its outputs safe.
+     */
+    private static final int WATCHDOG_MISSED_PERIODS = 5;
+    
+    /**
+     * Forces actuators safe when a subsystem's loop stalls.
+     */
+    private Watchdog watchdog;
     private Logger logger;
     private Autonomous auto;
     
@@ -37,19 +67,50 @@ public class EntryPoint extends SimpleRobot {
         logger = new Logger("Robot State");
         subsystems= new GenericSubsystem[]{
                 LogWriter.getInstance(),
+                SensorSampler.getInstance(),
+                DashboardPublisher.getInstance(),
+                LcdDisplay.getInstance(),
                 Drives.getInstance(),
                 Controls.getInstance(),
                 Autonomous.getInstance(),
                 Acquisitions.getInstance(),
                 Shooter.getInstance(),
-                Vision.getInstance()
+                Vision.getInstance(),
+                ImageWriter.getInstance()
                 };
 
         logger = new Logger("Robot State");
         auto = Autonomous.getInstance();
-        for (int i = 0; i < subsystems.length; i++) {
-            subsystems[i].start();
+        //Every singleton above exists before any thread starts, and every
+        //init() returns before the first mode callback
+        new SubsystemInitializer().initAll(subsystems);
+        if(USE_SCHEDULER){
+            scheduler = new Scheduler("Scheduler", Thread.MAX_PRIORITY);
+            scheduler.register(SensorSampler.getInstance());
+            scheduler.register(Drives.getInstance());
+            scheduler.register(Controls.getInstance());
+            scheduler.register(Acquisitions.getInstance());
+            scheduler.register(Shooter.getInstance());
+            scheduler.register(DashboardPublisher.getInstance());
+            scheduler.register(LcdDisplay.getInstance());
+            //These block inside execute() so they keep their own threads
+            LogWriter.getInstance().start();
+            Autonomous.getInstance().start();
+            Vision.getInstance().start();
+            ImageWriter.getInstance().start();
+            scheduler.start();
+        }else{
+            for (int i = 0; i < subsystems.length; i++) {
+                subsystems[i].start();
+            }
         }
+        LcdDisplay.getInstance().showLoopTimes(new GenericSubsystem[]{
+                Drives.getInstance(), Acquisitions.getInstance(), Shooter.getInstance()});
+        watchdog = new Watchdog();
+        watchdog.watch(Drives.getInstance(), WATCHDOG_MISSED_PERIODS);
+        watchdog.watch(Acquisitions.getInstance(), WATCHDOG_MISSED_PERIODS);
+        watchdog.watch(Shooter.getInstance(), WATCHDOG_MISSED_PERIODS);
+        watchdog.start();
         logger.logMessage("Robot init ended");
     }
     
@@ -57,6 +118,8 @@ public class EntryPoint extends SimpleRobot {
      * This function is called once each time the robot enters autonomous mode.
      */
     public void autonomous() {
+        //Log the new mode, not the one in the last snapshot
+        DriverStationSnapshot.capture();
         logger.logMessage("Switched to Autonomous");
         auto.runAuto(true);
     }
@@ -65,6 +128,7 @@ public class EntryPoint extends SimpleRobot {
      * This function is called once each time the robot enters operator control.
      */
     public void operatorControl() {
+        DriverStationSnapshot.capture();
         logger.logMessage("Switched to Teleop");
         auto.runAuto(false);
     }
@@ -75,8 +139,10 @@ public class EntryPoint extends SimpleRobot {
      * robot enters the disabled state.
      */
     public void disabled(){
+        DriverStationSnapshot.capture();
         logger.logMessage("Switched to Disabled");
         auto.runAuto(false);
+        LogWriter.getInstance().flush();
     }
     
     /**
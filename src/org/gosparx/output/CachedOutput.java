@@ -0,0 +1,86 @@
+package org.gosparx.output;
+
+/**
+ * An actuator whose commanded value is held until the end of the loop and
+ * only written to the hardware when it changed. Subsystems call set() as
+ * often as they like, the {@link OutputCache} they are registered with calls
+ * {@link #flush(long)} once per loop.
+ */
+public abstract class CachedOutput {
+
+    /**
+     * If the next flush must write no matter what was written last.
+     */
+    protected volatile boolean dirty = true;
+
+    /**
+     * The number of writes that reached the hardware.
+     */
+    private int writes = 0;
+
+    /**
+     * The number of flushes that skipped the write because nothing changed.
+     */
+    private int suppressed = 0;
+
+    /**
+     * Writes the commanded value if it differs from the last written value,
+     * or if the output needs a keep alive.
+     * @param now - the {@link org.gosparx.util.Clock} time in microseconds
+     */
+    void flush(long now){
+        if(dirty || changed() || keepAliveDue(now)){
+            dirty = false;
+            write(now);
+            writes++;
+        }else{
+            suppressed++;
+        }
+    }
+
+    /**
+     * Forces the next flush to write, for when something else may have
+     * written to the hardware (LiveWindow in test mode).
+     */
+    void invalidate(){
+        dirty = true;
+    }
+
+    /**
+     * @return if the commanded value differs from the last written value
+     */
+    protected abstract boolean changed();
+
+    /**
+     * @param now - the time in microseconds
+     * @return if the output must be rewritten even though it has not changed
+     */
+    protected boolean keepAliveDue(long now){
+        return false;
+    }
+
+    /**
+     * Writes the commanded value to the hardware.
+     * @param now - the time in microseconds
+     */
+    protected abstract void write(long now);
+
+    /**
+     * @return the commanded value as a number, for the flight recorder
+     */
+    public abstract double value();
+
+    /**
+     * @return the number of writes that reached the hardware
+     */
+    public int getWrites(){
+        return writes;
+    }
+
+    /**
+     * @return the number of writes skipped because nothing changed
+     */
+    public int getSuppressed(){
+        return suppressed;
+    }
+}
@@ -0,0 +1,79 @@
+package org.gosparx.output;
+
+import edu.wpi.first.wpilibj.Solenoid;
+
+/**
+ * A {@link Solenoid} that is only written when its state changes. Solenoids
+ * hold their state, so there is no keep alive.
+ */
+public class CachedSolenoid extends CachedOutput {
+
+    /**
+     * The Solenoid being controlled.
+     */
+    private final Solenoid solenoid;
+
+    /**
+     * The state the subsystem wants.
+     */
+    private volatile boolean wanted;
+
+    /**
+     * The state last written to the Solenoid.
+     */
+    private boolean written;
+
+    /**
+     * @param solenoid - the Solenoid to control
+     */
+    public CachedSolenoid(Solenoid solenoid){
+        this.solenoid = solenoid;
+    }
+
+    /**
+     * Sets the state written at the end of this loop.
+     * @param on - the state
+     */
+    public void set(boolean on){
+        wanted = on;
+    }
+
+    /**
+     * @return the state that will be written at the end of this loop
+     */
+    public boolean get(){
+        return wanted;
+    }
+
+    /**
+     * Writes the state straight to the Solenoid without waiting for the end
+     * of the loop. Only for forcing outputs safe from another thread.
+     * @param on - the state
+     */
+    public void setNow(boolean on){
+        wanted = on;
+        solenoid.set(on);
+        written = on;
+    }
+
+    /**
+     * @return the Solenoid, for LiveWindow
+     */
+    public Solenoid getSolenoid(){
+        return solenoid;
+    }
+
+    public double value(){
+        return wanted ? 1 : 0;
+    }
+
+    protected boolean changed(){
+        return wanted != written;
+    }
+
+    protected void write(long now){
+        boolean on = wanted;
+        solenoid.set(on);
+        written = on;
+    }
+}
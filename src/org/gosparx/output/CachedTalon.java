@@ -0,0 +1,99 @@
+package org.gosparx.output;
+
+import edu.wpi.first.wpilibj.Talon;
+import org.gosparx.util.Clock;
+
+/**
+ * A {@link Talon} that is only written when its speed changes, or every
+ * keep alive period so the PWM signal is refreshed.
+ */
+public class CachedTalon extends CachedOutput {
+
+    /**
+     * The Talon being controlled.
+     */
+    private final Talon talon;
+
+    /**
+     * The time in microseconds between writes of an unchanged speed. 0 never
+     * rewrites an unchanged speed.
+     */
+    private final long keepAlive;
+
+    /**
+     * The speed the subsystem wants.
+     */
+    private volatile double wanted = 0;
+
+    /**
+     * The speed last written to the Talon.
+     */
+    private double written = 0;
+
+    /**
+     * The time in microseconds of the last write.
+     */
+    private long lastWrite = 0;
+
+    /**
+     * @param talon - the Talon to control
+     * @param keepAliveMs - the ms between writes of an unchanged speed
+     */
+    public CachedTalon(Talon talon, int keepAliveMs){
+        this.talon = talon;
+        this.keepAlive = keepAliveMs * 1000L;
+    }
+
+    /**
+     * Sets the speed written at the end of this loop.
+     * @param speed - the speed, -1 to 1
+     */
+    public void set(double speed){
+        wanted = speed;
+    }
+
+    /**
+     * @return the speed that will be written at the end of this loop
+     */
+    public double get(){
+        return wanted;
+    }
+
+    /**
+     * Writes the speed straight to the Talon without waiting for the end of
+     * the loop. Only for forcing outputs safe from another thread.
+     * @param speed - the speed, -1 to 1
+     */
+    public void setNow(double speed){
+        wanted = speed;
+        talon.set(speed);
+        written = speed;
+        lastWrite = Clock.get().micros();
+    }
+
+    /**
+     * @return the Talon, for LiveWindow
+     */
+    public Talon getTalon(){
+        return talon;
+    }
+
+    public double value(){
+        return wanted;
+    }
+
+    protected boolean changed(){
+        return wanted != written;
+    }
+
+    protected boolean keepAliveDue(long now){
+        return keepAlive > 0 && now - lastWrite >= keepAlive;
+    }
+
+    protected void write(long now){
+        double speed = wanted;
+        talon.set(speed);
+        written = speed;
+        lastWrite = now;
+    }
+}
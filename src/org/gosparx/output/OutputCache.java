@@ -0,0 +1,141 @@
+package org.gosparx.output;
+
+import edu.wpi.first.wpilibj.Solenoid;
+import edu.wpi.first.wpilibj.Talon;
+import org.gosparx.util.Clock;
+
+/**
+ * The actuators of one subsystem. Values set during execute() are held and
+ * written together by {@link #flush()} at the end of the loop, and only if
+ * they changed, which keeps redundant PWM and solenoid writes off the bus and
+ * makes every output change at the same point in the loop.
+ */
+public class OutputCache {
+
+    /**
+     * The most outputs one subsystem can have.
+     */
+    private static final int MAX_OUTPUTS = 16;
+
+    /**
+     * The default time in ms between writes of an unchanged PWM speed.
+     */
+    public static final int DEFAULT_KEEP_ALIVE = 100;
+
+    /**
+     * The registered outputs.
+     */
+    private final CachedOutput[] outputs = new CachedOutput[MAX_OUTPUTS];
+
+    /**
+     * The number of registered outputs.
+     */
+    private int count = 0;
+
+    /**
+     * The time in ms between writes of an unchanged PWM speed.
+     */
+    private int keepAliveMs = DEFAULT_KEEP_ALIVE;
+
+    /**
+     * Sets the keep alive for Talons added after this call.
+     * @param keepAliveMs - the ms between writes of an unchanged speed, 0 to
+     * only write on change
+     */
+    public void setKeepAlive(int keepAliveMs){
+        this.keepAliveMs = keepAliveMs;
+    }
+
+    /**
+     * Wraps a Talon so it is written by this cache.
+     * @param talon - the Talon
+     * @return the cached Talon
+     */
+    public synchronized CachedTalon add(Talon talon){
+        CachedTalon cached = new CachedTalon(talon, keepAliveMs);
+        add(cached);
+        return cached;
+    }
+
+    /**
+     * Wraps a Solenoid so it is written by this cache.
+     * @param solenoid - the Solenoid
+     * @return the cached Solenoid
+     */
+    public synchronized CachedSolenoid add(Solenoid solenoid){
+        CachedSolenoid cached = new CachedSolenoid(solenoid);
+        add(cached);
+        return cached;
+    }
+
+    /**
+     * @param output - the output to register
+     * @throws IllegalStateException if MAX_OUTPUTS are already registered, so
+     * an output that would never be written fails at init instead
+     */
+    private void add(CachedOutput output){
+        if(count >= MAX_OUTPUTS){
+            throw new IllegalStateException("OutputCache full, raise MAX_OUTPUTS");
+        }
+        outputs[count++] = output;
+    }
+
+    /**
+     * Writes every output that changed. Called once at the end of each loop.
+     */
+    public void flush(){
+        long now = Clock.get().micros();
+        int n = count;
+        for(int i = 0; i < n; i++){
+            outputs[i].flush(now);
+        }
+    }
+
+    /**
+     * Forces every output to be written on the next flush.
+     */
+    public void invalidate(){
+        int n = count;
+        for(int i = 0; i < n; i++){
+            outputs[i].invalidate();
+        }
+    }
+
+    /**
+     * @return the number of outputs
+     */
+    public int getCount(){
+        return count;
+    }
+
+    /**
+     * @param i - the index of the output, in the order they were added
+     * @return the commanded value of the output, or 0 if there is no such
+     * output. A Solenoid is 1 when on.
+     */
+    public double getValue(int i){
+        return i < count ? outputs[i].value() : 0;
+    }
+
+    /**
+     * @return the number of writes that reached the hardware
+     */
+    public int getWrites(){
+        int total = 0;
+        for(int i = 0; i < count; i++){
+            total += outputs[i].getWrites();
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of writes skipped because nothing changed
+     */
+    public int getSuppressed(){
+        int total = 0;
+        for(int i = 0; i < count; i++){
+            total += outputs[i].getSuppressed();
+        }
+        return total;
+    }
+}
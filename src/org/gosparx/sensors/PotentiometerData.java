@@ -42,10 +42,33 @@ public class PotentiometerData {
         zeroPointVolts = pot.get();
     }
     
+    /**
+     * @return the "zero" point in volts
+     */
+    public double getZero(){
+        return zeroPointVolts;
+    }
+    
+    /**
+     * Sets the "zero" point, for one saved from an earlier reset.
+     * @param volts - the new "zero" point in volts
+     */
+    public void setZero(double volts){
+        zeroPointVolts = volts;
+    }
+    
     /**
      * @return the inches from the "zero" point the potentiometer is.
      */ 
     public double getInches(){
-        return ((pot.get() - zeroPointVolts) * inchesPerVolt);
+        return getInches(pot.get());
+    }
+    
+    /**
+     * @param volts - a reading already taken from the potentiometer
+     * @return the inches from the "zero" point for that reading.
+     */ 
+    public double getInches(double volts){
+        return ((volts - zeroPointVolts) * inchesPerVolt);
     }
 }
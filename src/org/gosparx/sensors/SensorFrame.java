@@ -0,0 +1,70 @@
+package org.gosparx.sensors;
+
+/**
+ * One reading of every sensor sampled by the {@link SensorSampler}. Frames are
+ * allocated once and copied into, so reading one does not create garbage.
+ * Use the channel constants in {@link SensorSampler} to get values.
+ */
+public class SensorFrame {
+
+    /**
+     * The analog and encoder values, indexed by the double channels.
+     */
+    final double[] doubles = new double[SensorSampler.DOUBLE_CHANNELS];
+
+    /**
+     * The digital values, indexed by the boolean channels.
+     */
+    final boolean[] booleans = new boolean[SensorSampler.BOOLEAN_CHANNELS];
+
+    /**
+     * The clock time in microseconds the frame was sampled at.
+     */
+    long timestamp;
+
+    /**
+     * The sequence number of the frame. 0 if nothing has been sampled yet.
+     */
+    int sequence;
+
+    /**
+     * Copies another frame into this one.
+     * @param other - the frame to copy
+     */
+    void copyFrom(SensorFrame other){
+        System.arraycopy(other.doubles, 0, doubles, 0, doubles.length);
+        System.arraycopy(other.booleans, 0, booleans, 0, booleans.length);
+        timestamp = other.timestamp;
+        sequence = other.sequence;
+    }
+
+    /**
+     * @param channel - a double channel from {@link SensorSampler}
+     * @return the value of the channel
+     */
+    public double getDouble(int channel){
+        return doubles[channel];
+    }
+
+    /**
+     * @param channel - a boolean channel from {@link SensorSampler}
+     * @return the value of the channel
+     */
+    public boolean getBoolean(int channel){
+        return booleans[channel];
+    }
+
+    /**
+     * @return the clock time in microseconds the frame was sampled at
+     */
+    public long getTimestamp(){
+        return timestamp;
+    }
+
+    /**
+     * @return the sequence number of the frame, 0 if nothing has been sampled
+     */
+    public int getSequence(){
+        return sequence;
+    }
+}
@@ -0,0 +1,215 @@
+package org.gosparx.sensors;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Encoder;
+import edu.wpi.first.wpilibj.Gyro;
+import edu.wpi.first.wpilibj.interfaces.Potentiometer;
+import org.gosparx.subsystem.GenericSubsystem;
+import org.gosparx.util.Clock;
+import org.gosparx.util.Logger;
+
+/**
+ * Reads every registered sensor at a fixed high rate into a preallocated
+ * {@link SensorFrame}, so all consumers see readings taken at the same time.
+ *
+ * Frames are double buffered: the sampler fills the frame that is not
+ * published and then publishes it by bumping a volatile sequence number.
+ * Readers copy the published frame and retry if the sampler started writing
+ * over it during the copy, so nobody ever takes a lock.
+ *
+ * The sensors themselves are still created by the subsystems that own them,
+ * which register them here in their init(). A frame sampled before a sensor
+ * was registered or reset is stale, so consumers compare
+ * {@link SensorFrame#getTimestamp()} to their last reset and read the sensor
+ * directly when the frame is older.
+ */
+public class SensorSampler extends GenericSubsystem {
+
+    //Double channels
+    public static final int GYRO_ANGLE                  = 0;
+    public static final int LEFT_DRIVES_DISTANCE        = 1;
+    public static final int RIGHT_DRIVES_DISTANCE       = 2;
+    public static final int PIVOT_DISTANCE              = 3;
+    public static final int WINCH_POT_VOLTS             = 4;
+    static final int DOUBLE_CHANNELS                    = 5;
+
+    //Boolean channels
+    public static final int BALL_DETECTOR               = 0;
+    public static final int UPPER_LIMIT                 = 1;
+    public static final int LOWER_LIMIT                 = 2;
+    public static final int LATCH_SWITCH                = 3;
+    static final int BOOLEAN_CHANNELS                   = 4;
+
+    private static final int KIND_NONE = 0;
+    private static final int KIND_GYRO = 1;
+    private static final int KIND_ENCODER = 2;
+    private static final int KIND_POT = 3;
+
+    /**
+     * The time in ms between samples.
+     */
+    private static final int SAMPLE_PERIOD = 5;
+
+    /**
+     * The only SensorSampler.
+     */
+    private static SensorSampler sampler;
+
+    /**
+     * The sensor for each double channel.
+     */
+    private final Object[] doubleSources = new Object[DOUBLE_CHANNELS];
+
+    /**
+     * The kind of sensor for each double channel.
+     */
+    private final int[] doubleKinds = new int[DOUBLE_CHANNELS];
+
+    /**
+     * The sensor for each boolean channel.
+     */
+    private final DigitalInput[] booleanSources = new DigitalInput[BOOLEAN_CHANNELS];
+
+    /**
+     * The two frames. The published one is frames[published & 1].
+     */
+    private final SensorFrame[] frames = new SensorFrame[]{new SensorFrame(), new SensorFrame()};
+
+    /**
+     * The sequence number of the frame being written.
+     */
+    private volatile int writing = 0;
+
+    /**
+     * The sequence number of the last published frame.
+     */
+    private volatile int published = 0;
+
+    /**
+     * The number of times a reader had to retry because of a torn frame.
+     */
+    private int retries = 0;
+
+    /**
+     * @return the only SensorSampler
+     */
+    public static SensorSampler getInstance(){
+        if(sampler == null){
+            sampler = new SensorSampler();
+        }
+        return sampler;
+    }
+
+    /**
+     * Creates the SensorSampler.
+     */
+    private SensorSampler(){
+        super(Logger.SUB_SENSORS, Thread.MAX_PRIORITY);
+    }
+
+    /**
+     * Samples a gyro's angle on a double channel.
+     * @param channel - the channel
+     * @param gyro - the gyro
+     */
+    public synchronized void registerGyro(int channel, Gyro gyro){
+        doubleSources[channel] = gyro;
+        doubleKinds[channel] = KIND_GYRO;
+    }
+
+    /**
+     * Samples an encoder's scaled distance on a double channel.
+     * @param channel - the channel
+     * @param encoder - the encoder
+     */
+    public synchronized void registerEncoder(int channel, Encoder encoder){
+        doubleSources[channel] = encoder;
+        doubleKinds[channel] = KIND_ENCODER;
+    }
+
+    /**
+     * Samples a potentiometer's raw value on a double channel.
+     * @param channel - the channel
+     * @param pot - the potentiometer
+     */
+    public synchronized void registerPot(int channel, Potentiometer pot){
+        doubleSources[channel] = pot;
+        doubleKinds[channel] = KIND_POT;
+    }
+
+    /**
+     * Samples a digital input on a boolean channel.
+     * @param channel - the channel
+     * @param input - the digital input
+     */
+    public synchronized void registerDigital(int channel, DigitalInput input){
+        booleanSources[channel] = input;
+    }
+
+    /**
+     * Copies the newest consistent frame.
+     * @param into - the frame to copy into
+     * @return the sequence number of the frame
+     */
+    public int read(SensorFrame into){
+        while(true){
+            int seq = published;
+            into.copyFrom(frames[seq & 1]);
+            if(writing - seq <= 1){
+                return seq;
+            }
+            retries++;
+        }
+    }
+
+    public void init() {
+    }
+
+    /**
+     * Samples every registered sensor into the unpublished frame, then
+     * publishes it.
+     */
+    public void execute() throws Exception {
+        int next = published + 1;
+        writing = next;
+        SensorFrame frame = frames[next & 1];
+        //Stamped before sampling, so a reset during sampling makes the frame stale
+        frame.timestamp = Clock.get().micros();
+        synchronized(this){
+            for(int i = 0; i < DOUBLE_CHANNELS; i++){
+                switch(doubleKinds[i]){
+                    case KIND_GYRO:
+                        frame.doubles[i] = ((Gyro)doubleSources[i]).getAngle();
+                        break;
+                    case KIND_ENCODER:
+                        frame.doubles[i] = ((Encoder)doubleSources[i]).getDistance();
+                        break;
+                    case KIND_POT:
+                        frame.doubles[i] = ((Potentiometer)doubleSources[i]).get();
+                        break;
+                    case KIND_NONE:
+                    default:
+                        break;
+                }
+            }
+            for(int i = 0; i < BOOLEAN_CHANNELS; i++){
+                if(booleanSources[i] != null){
+                    frame.booleans[i] = booleanSources[i].get();
+                }
+            }
+        }
+        frame.sequence = next;
+        published = next;
+    }
+
+    public void liveWindow() {
+    }
+
+    public int sleepTime() {
+        return SAMPLE_PERIOD;
+    }
+
+    public void logInfo() {
+        log.logMessage("Frames: " + published + " Reader retries: " + retries);
+    }
+}
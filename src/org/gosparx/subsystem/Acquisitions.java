@@ -4,12 +4,17 @@ import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj.Encoder;
 import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj.Talon;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import org.gosparx.IO;
+import org.gosparx.output.CachedSolenoid;
+import org.gosparx.output.CachedTalon;
 import org.gosparx.sensors.EncoderData;
+import org.gosparx.sensors.SensorFrame;
+import org.gosparx.sensors.SensorSampler;
+import org.gosparx.util.Clock;
+import org.gosparx.util.DashboardPublisher;
 import org.gosparx.util.Logger;
+import org.gosparx.util.Telemetry;
 
 /**
  * Tried to improve Acquisitions
@@ -44,6 +49,13 @@ public class Acquisitions extends GenericSubsystem{
      * Is returned in getInstance
      */
     private static Acquisitions acquisitions;
+
+    /**
+     * Log templates for logInfo().
+     */
+    private static final int LOG_WANTED_ANGLE = Logger.template("Wanted Angle: {}");
+    private static final int LOG_ROTATE_ENCODER = Logger.template("Rotate Encoder: {}");
+    private static final int LOG_ROTATE_MOTOR = Logger.template("Rotate Motor: {}");
     
     /*/*************MOTORS/SENSORS/SOLENOIDS******************** /*/
     
@@ -51,24 +63,24 @@ public class Acquisitions extends GenericSubsystem{
      * Used to control the angle of the shooter
      * mini-CIM driven with a 55/12 reduction (motor/output)
      */
-    private Talon rotatingMotorPWM;
+    private CachedTalon rotatingMotorPWM;
     
     /**
      * Used to control the intake rollers
      * Bag Motor/Fisher Price driven with a 5/1 reduction (motor/output)
      */
-    private Talon acqRollerPWM;
+    private CachedTalon acqRollerPWM;
     
     /**
      * Used to fully extend the acquisition rollers to be able to acquire balls
      */
-    private Solenoid acqLongPnu;
+    private CachedSolenoid acqLongPnu;
     
     /**
      * Used to move acquisition rollers out of the way of the ball when firing.
      * Should be extended once match begins
      */
-    private Solenoid acqShortPnu;
+    private CachedSolenoid acqShortPnu;
     
     /**
      * Limit Switch. Mounted on the acquisition rollers
@@ -93,12 +105,12 @@ public class Acquisitions extends GenericSubsystem{
     /**
      * Gives power to the ball detector system
      */
-    private Solenoid ballDetectorPower;
+    private CachedSolenoid ballDetectorPower;
     
     /**
      * Locks the cage into a certain position by locking the rotating gear
      */
-    private Solenoid tiltBrake;
+    private CachedSolenoid tiltBrake;
             
     /**
      * Is attached to the motor that drives the rotating motion.
@@ -223,6 +235,33 @@ public class Acquisitions extends GenericSubsystem{
      */ 
     private static final String WANTED_ANGLE_DISPLAY = "Wanted Angle";
     
+    /**
+     * The commands other subsystems post to acquisitions.
+     */
+    private static final int CMD_SET_MODE           = 0;
+    private static final int CMD_SET_PRESET         = 1;
+    private static final int CMD_ADD_OFFSET         = 2;
+    private static final int CMD_MANUAL_ACQ         = 3;
+    private static final int CMD_BRAKE_ENABLED      = 4;
+    private static final int CMD_TOGGLE_BRAKE       = 5;
+    
+    /**
+     * The flags in the acquisitions {@link SubsystemStatus}. Its state is the
+     * acquisition state, measurement 1 is the pivot angle and measurement 2 is
+     * the wanted angle.
+     */
+    public static final int STATUS_READY_TO_SHOOT   = 1;
+    public static final int STATUS_BALL_IN_ROLLERS  = 2;
+    public static final int STATUS_BRAKE_ENABLED    = 4;
+    public static final int STATUS_MANUAL_ACQ       = 8;
+    
+    /**
+     * The {@link DashboardPublisher} handles for the dashboard values.
+     */
+    private int readyToShootKey = -1;
+    private int wantedAngleKey = -1;
+    private int brakeEnabledKey = -1;
+    
     /**
      * The tolerance in degrees for pivoting.
      */
@@ -356,6 +395,30 @@ public class Acquisitions extends GenericSubsystem{
     
     private boolean manaulAcquisition;
     
+    /**
+     * The newest sensor readings from the {@link SensorSampler}.
+     */
+    private SensorFrame sensorFrame = new SensorFrame();
+    
+    /**
+     * The {@link Clock} time in microseconds the sensors were registered or 
+     * the pivot encoder was last reset. Sensor frames older than this are 
+     * ignored.
+     */
+    private volatile long lastSensorReset = 0;
+    
+    /**
+     * Records the pivot loop every loop while enabled, for tuning.
+     */
+    private Telemetry telemetry;
+    
+    /**
+     * The telemetry channels.
+     */
+    private int telPivotAngle;
+    private int telRotationSpeed;
+    private int telState;
+    
     /**
      * Gets the instance of Acquisitions.
      * 
@@ -382,23 +445,32 @@ public class Acquisitions extends GenericSubsystem{
      * Sets the short cylinder to its default position.
      */
     public void init() {
-        rotatingMotorPWM = new Talon(IO.DEFAULT_SLOT, IO.PWM_PIVOT);
-        acqRollerPWM = new Talon(IO.DEFAULT_SLOT, IO.PWM_ACQ);
-        tiltBrake = new Solenoid(IO.DEFAULT_SLOT, IO.PNU_BRAKE);
-        acqLongPnu = new Solenoid(IO.DEFAULT_SLOT, IO.ACQ_TOGGLE_CHAN);
-        acqShortPnu = new Solenoid(IO.DEFAULT_SLOT, IO.KEEP_IN_FRAME_CHAN);
+        rotatingMotorPWM = outputs.add(new Talon(IO.DEFAULT_SLOT, IO.PWM_PIVOT));
+        acqRollerPWM = outputs.add(new Talon(IO.DEFAULT_SLOT, IO.PWM_ACQ));
+        tiltBrake = outputs.add(new Solenoid(IO.DEFAULT_SLOT, IO.PNU_BRAKE));
+        acqLongPnu = outputs.add(new Solenoid(IO.DEFAULT_SLOT, IO.ACQ_TOGGLE_CHAN));
+        acqShortPnu = outputs.add(new Solenoid(IO.DEFAULT_SLOT, IO.KEEP_IN_FRAME_CHAN));
         ballDetector = new DigitalInput(IO.DEFAULT_SLOT, IO.ACQ_BALL_DETECTOR);
         upperLimit = new DigitalInput(IO.DEFAULT_SLOT, IO.SHOOTER_SAFE_MODE_CHAN);
         lowerLimit = new DigitalInput(IO.DEFAULT_SLOT, IO.SHOOTER_ACQ_MODE_CHAN);
         rotateEncoder = new Encoder(IO.DEFAULT_SLOT, IO.PIVOT_ENCODER_CHAN_1, IO.DEFAULT_SLOT, IO.PIVOT_ENCODER_CHAN_2, false);
         rotateEncoder.setDistancePerPulse(DEGREES_PER_TICK);
         rotateEncoderData = new EncoderData(rotateEncoder, DEGREES_PER_TICK);
-        ballDetectorPower =  new Solenoid(IO.ALTERNATE_SLOT, IO.BALL_SENSOR_POWER);//MAKES BALL SESNOR TURN ON
+        ballDetectorPower = outputs.add(new Solenoid(IO.ALTERNATE_SLOT, IO.BALL_SENSOR_POWER));//MAKES BALL SESNOR TURN ON
         
         acqShortPnu.set(ACQ_SHORT_PNU_EXTENDED);//Puts the rollers out of way of the shooter
-        setMode(AcqState.SAFE_STATE);
-        rotateEncoderData.reset(); 
+        changeMode(AcqState.SAFE_STATE);
+        SensorSampler sampler = SensorSampler.getInstance();
+        sampler.registerEncoder(SensorSampler.PIVOT_DISTANCE, rotateEncoder);
+        sampler.registerDigital(SensorSampler.BALL_DETECTOR, ballDetector);
+        sampler.registerDigital(SensorSampler.UPPER_LIMIT, upperLimit);
+        sampler.registerDigital(SensorSampler.LOWER_LIMIT, lowerLimit);
+        resetPivotEncoder(); 
         ballDetectorPower.set(true);
+        telemetry = new Telemetry(Logger.SUB_ACQUISITIONS);
+        telPivotAngle = telemetry.addDouble("pivotAngle");
+        telRotationSpeed = telemetry.addDouble("rotationSpeed");
+        telState = telemetry.addInt("state");
     }
 
     /**
@@ -407,16 +479,26 @@ public class Acquisitions extends GenericSubsystem{
      */
     public void execute() throws Exception {
         rotateEncoderData.calculateSpeed();//Calculates the distance and speed of the encoder
-        isBallInRollers = ballDetector.get();
-        upperLimitSwitch = !upperLimit.get();
-        lowerLimitSwitch = !lowerLimit.get();
+        double pivotAngle;
+        SensorSampler.getInstance().read(sensorFrame);
+        if(sensorFrame.getTimestamp() > lastSensorReset){
+            pivotAngle = sensorFrame.getDouble(SensorSampler.PIVOT_DISTANCE);
+            isBallInRollers = sensorFrame.getBoolean(SensorSampler.BALL_DETECTOR);
+            upperLimitSwitch = !sensorFrame.getBoolean(SensorSampler.UPPER_LIMIT);
+            lowerLimitSwitch = !sensorFrame.getBoolean(SensorSampler.LOWER_LIMIT);
+        }else{
+            pivotAngle = rotateEncoderData.getDistance();
+            isBallInRollers = ballDetector.get();
+            upperLimitSwitch = !upperLimit.get();
+            lowerLimitSwitch = !lowerLimit.get();
+        }
         switch (acquisitionState) {
             case AcqState.ROTATE_UP://rotate shooter up
                 if(tiltBrake.get() == BRAKE_EXTENDED){
-                    lastUnBrakeTime = Timer.getFPGATimestamp();
+                    lastUnBrakeTime = now();
                     brakePosition = !BRAKE_EXTENDED;
                     break;
-                }else if(Timer.getFPGATimestamp() - lastUnBrakeTime < UNBRAKE_TIME){
+                }else if(now() - lastUnBrakeTime < UNBRAKE_TIME){
                     rotationSpeed = -TILT_HOLD_POSITION;
                     break;
                 }
@@ -425,13 +507,13 @@ public class Acquisitions extends GenericSubsystem{
                     rotationSpeed = 0;
                     wantedAcqSpeed = 0;
                     acquisitionState = AcqState.SAFE_STATE;
-                } else if (wantedShooterAngle + PIVOT_THRESHOLD >= rotateEncoderData.getDistance()) {
+                } else if (wantedShooterAngle + PIVOT_THRESHOLD >= pivotAngle) {
                     rotationSpeed = 0;
                     wantedAcqSpeed = 0;
                     firstReadyToShot = true;
                     acquisitionState = wantedState;
                 } else {
-                    if (rotateEncoderData.getDistance() > CENTER_OF_GRAVITY_ANGLE) {
+                    if (pivotAngle > CENTER_OF_GRAVITY_ANGLE) {
                         if (rotateEncoderData.getSpeed() > ROTATE_UP_SPEED) {
                             rotationSpeed += .05;
                         } else {
@@ -447,7 +529,7 @@ public class Acquisitions extends GenericSubsystem{
                     }
                 }
 
-                if (rotateEncoderData.getDistance() <= ACQ_ROLLER_ALLOWED_TO_EXTEND_UPPER 
+                if (pivotAngle <= ACQ_ROLLER_ALLOWED_TO_EXTEND_UPPER 
                         && acqLongPnu.get() == ACQ_LONG_PNU_EXTENDED) {
                     acqLongPnu.set(!ACQ_LONG_PNU_EXTENDED);
                     acqShortPnu.set(!ACQ_SHORT_PNU_EXTENDED);
@@ -455,19 +537,19 @@ public class Acquisitions extends GenericSubsystem{
                 break;
             case AcqState.ROTATE_DOWN://rotate shooter down
                 if(tiltBrake.get() == BRAKE_EXTENDED){
-                    lastUnBrakeTime = Timer.getFPGATimestamp();
+                    lastUnBrakeTime = now();
                     brakePosition = !BRAKE_EXTENDED;
                     break;
-                }else if(Timer.getFPGATimestamp() - lastUnBrakeTime < UNBRAKE_TIME){
+                }else if(now() - lastUnBrakeTime < UNBRAKE_TIME){
                     rotationSpeed = -TILT_HOLD_POSITION;
                     break;
                 }
                 
                 if (wantedShooterAngle == DOWN_POSITION && (lowerLimitSwitch|| 
-                        (rotateEncoderData.getDistance() > ACQUIRING_THRESHOLD))) {
+                        (pivotAngle > ACQUIRING_THRESHOLD))) {
                     rotationSpeed = 0;
                     acquisitionState = wantedState;
-                } else if (wantedShooterAngle - PIVOT_THRESHOLD <= rotateEncoderData.getDistance()) {
+                } else if (wantedShooterAngle - PIVOT_THRESHOLD <= pivotAngle) {
                     rotationSpeed = 0;
                     firstReadyToShot = true;
                     acquisitionState = wantedState;
@@ -484,7 +566,7 @@ public class Acquisitions extends GenericSubsystem{
                     }
                 }
                 
-                if (rotateEncoderData.getDistance() >= ACQ_ROLLER_ALLOWED_TO_EXTEND
+                if (pivotAngle >= ACQ_ROLLER_ALLOWED_TO_EXTEND
                         && acqLongPnu.get() == !ACQ_LONG_PNU_EXTENDED) {
                     acqLongPnu.set(ACQ_LONG_PNU_EXTENDED);
                     acqShortPnu.set(ACQ_SHORT_PNU_EXTENDED);
@@ -521,15 +603,15 @@ public class Acquisitions extends GenericSubsystem{
                 wantedAcqSpeed = 0;
                 acqShortPnu.set(ACQ_SHORT_PNU_EXTENDED);
                 acqLongPnu.set(!ACQ_LONG_PNU_EXTENDED);
-                rotationSpeed = (rotateEncoderData.getDistance() - wantedShooterAngle) / 7.5;
+                rotationSpeed = (pivotAngle - wantedShooterAngle) / 7.5;
                 if (isBrakeEnabled) {
                     if (firstReadyToShot) {
                         log.logMessage("Ready To Shoot - Settling Shooter");
-                        lastCorrectionTime = Timer.getFPGATimestamp();
+                        lastCorrectionTime = now();
                         firstReadyToShot = false;
-                    } else if (Timer.getFPGATimestamp() - lastCorrectionTime >= ERROR_CORRECT_TIME + .25){
+                    } else if (now() - lastCorrectionTime >= ERROR_CORRECT_TIME + .25){
                         rotationSpeed = TILT_HOLD_POSITION;
-                    } else if (Timer.getFPGATimestamp() - lastCorrectionTime >= ERROR_CORRECT_TIME) {
+                    } else if (now() - lastCorrectionTime >= ERROR_CORRECT_TIME) {
                         brakePosition = BRAKE_EXTENDED;
                     }
                 }else{
@@ -540,8 +622,8 @@ public class Acquisitions extends GenericSubsystem{
                 acqLongPnu.set(!ACQ_LONG_PNU_EXTENDED);
                 acqShortPnu.set(ACQ_SHORT_PNU_EXTENDED);
                 rotationSpeed = -TILT_HOLD_POSITION;
-                if(rotateEncoderData.getDistance() < 0)
-                    rotateEncoderData.reset();
+                if(pivotAngle < 0)
+                    resetPivotEncoder();
                 if(manaulAcquisition){
                     wantedAcqSpeed = INTAKE_ROLLER_SPEED;
                 }else{
@@ -561,19 +643,50 @@ public class Acquisitions extends GenericSubsystem{
         tiltBrake.set(brakePosition);
         
         if(Math.abs(rotationSpeed) > -TILT_HOLD_POSITION && Math.abs(rotateEncoderData.getSpeed()) < 1.0 && 
-                Timer.getFPGATimestamp() - lastMotorCheck > MOTOR_OVERHEAT_TIME){
+                now() - lastMotorCheck > MOTOR_OVERHEAT_TIME){
             setPivotMotor(0);
             acquisitionState = AcqState.OFF_STATE;
             log.logMessage("MOTOR HAS STALLED");
         } else {
             if (Math.abs(rotationSpeed) <= -TILT_HOLD_POSITION) {
-                lastMotorCheck = Timer.getFPGATimestamp();
+                lastMotorCheck = now();
             } 
             setPivotMotor(rotationSpeed);            
         }
         setAcquiringMotor(wantedAcqSpeed);
         ballDetectorPower.set(true);
         updateSmartDashboard();
+        int flags = 0;
+        if(isReadyToShoot()){
+            flags |= STATUS_READY_TO_SHOOT;
+        }
+        if(isBallInRollers){
+            flags |= STATUS_BALL_IN_ROLLERS;
+        }
+        if(isBrakeEnabled){
+            flags |= STATUS_BRAKE_ENABLED;
+        }
+        if(manaulAcquisition){
+            flags |= STATUS_MANUAL_ACQ;
+        }
+        publishStatus(acquisitionState, flags, pivotAngle, wantedShooterAngle);
+        if(ds.isEnabled()){
+            telemetry.set(telPivotAngle, pivotAngle);
+            telemetry.set(telRotationSpeed, rotationSpeed);
+            telemetry.set(telState, acquisitionState);
+            telemetry.sample();
+        }else{
+            telemetry.endBlock();
+        }
+    }
+    
+    /**
+     * Resets the pivot encoder and marks older sensor frames as stale.
+     */
+    private void resetPivotEncoder(){
+        rotateEncoderData.reset();
+        //Marked after the reset, a frame sampled during it can hold old counts
+        lastSensorReset = Clock.get().micros();
     }
     
     /**
@@ -592,11 +705,28 @@ public class Acquisitions extends GenericSubsystem{
         rotatingMotorPWM.set(speed);
     }
     
+    /**
+     * Stops the pivot and roller motors and engages the tilt brake.
+     */
+    protected void safeOutput(){
+        rotatingMotorPWM.setNow(0);
+        acqRollerPWM.setNow(0);
+        tiltBrake.setNow(BRAKE_EXTENDED);
+    }
+    
     /**
      * If the current state is in ready to shoot then it is ok to shoot
      * @return if the acquisitions system is ready to shoot or not 
      */
     public boolean readyToShoot(){
+        return getStatus().isSet(STATUS_READY_TO_SHOOT);
+    }
+    
+    /**
+     * @return if the shooter is in position and braked. Acquisitions thread 
+     * only, other threads use {@link #readyToShoot()}.
+     */
+    private boolean isReadyToShoot(){
         return(acquisitionState == AcqState.READY_TO_SHOOT && tiltBrake.get() == BRAKE_EXTENDED);
     }
     
@@ -606,9 +736,9 @@ public class Acquisitions extends GenericSubsystem{
     public void logInfo(){
        log.logMessage("State: " + AcqState.getStateName(acquisitionState));
        log.logMessage("Wanted State: " + AcqState.getStateName(wantedState));
-       log.logMessage("Wanted Angle: " + wantedShooterAngle);
-       log.logMessage("Rotate Encoder: " + rotateEncoderData.getDistance());
-       log.logMessage("Rotate Motor: " + rotationSpeed);
+       log.logMessage(LOG_WANTED_ANGLE, wantedShooterAngle);
+       log.logMessage(LOG_ROTATE_ENCODER, rotateEncoderData.getDistance());
+       log.logMessage(LOG_ROTATE_MOTOR, rotationSpeed);
     }
     
     /**
@@ -616,6 +746,14 @@ public class Acquisitions extends GenericSubsystem{
      * @param state - get from AcqsitionState 
      */
     public void setMode(int state) {
+        post(CMD_SET_MODE, state, 0);
+    }
+    
+    /**
+     * Enters a state right away. Acquisitions thread only.
+     * @param state - get from AcqsitionState 
+     */
+    private void changeMode(int state) {
         wantedState = state;
         log.logMessage("Switching state to: " + AcqState.getStateName(state));
         switch (state) {
@@ -648,6 +786,14 @@ public class Acquisitions extends GenericSubsystem{
      * @param preset 
      */
     public void setPreset(int preset){
+        post(CMD_SET_PRESET, preset, 0);
+    }
+    
+    /**
+     * Moves to a preset right away. Acquisitions thread only.
+     * @param preset - the preset from AcqState
+     */
+    private void changePreset(int preset){
         shortShot = !SHORT_SHOT_ACTIVATED;
         wantedState = AcqState.READY_TO_SHOOT;
         switch(preset){
@@ -692,6 +838,14 @@ public class Acquisitions extends GenericSubsystem{
      *                 goes up, positive goes down.
      */ 
     public void addOffset(double offset){
+        post(CMD_ADD_OFFSET, offset, 0);
+    }
+    
+    /**
+     * Applies an offset right away. Acquisitions thread only.
+     * @param offset - the offset in degrees
+     */
+    private void applyOffset(double offset){
         wantedShooterAngle += offset;
         if(wantedShooterAngle < UP_POSITION){
             wantedShooterAngle = UP_POSITION;
@@ -721,16 +875,17 @@ public class Acquisitions extends GenericSubsystem{
      * @return true if the command is done or false if not
      */
     public boolean isLastCommandDone(int doneState){
-        return (doneState == acquisitionState);
+        return !hasPendingCommands() && (doneState == getStatus().getState());
     }
     
     /**
      * Update the info on the smart dashboard.
      */ 
     private void updateSmartDashboard(){
-        SmartDashboard.putBoolean(READY_TO_SHOOT_DISPLAY, readyToShoot());
-        SmartDashboard.putNumber(WANTED_ANGLE_DISPLAY, wantedShooterAngle);
-        SmartDashboard.putBoolean("Brake Enabled", isBrakeEnabled);
+        DashboardPublisher dashboard = DashboardPublisher.getInstance();
+        dashboard.setBoolean(readyToShootKey, isReadyToShoot());
+        dashboard.setNumber(wantedAngleKey, wantedShooterAngle);
+        dashboard.setBoolean(brakeEnabledKey, isBrakeEnabled);
     }
     
     public boolean isCloseShot(){
@@ -738,11 +893,14 @@ public class Acquisitions extends GenericSubsystem{
     }
     
     public void setManaulAcq(boolean acqOn){
-        manaulAcquisition = acqOn;
+        post(CMD_MANUAL_ACQ, acqOn ? 1 : 0, 0);
     }
 
+    /**
+     * @return if manual acquisition was on in the last published status
+     */
     public boolean getManaulAcq(){
-        return manaulAcquisition;
+        return getStatus().isSet(STATUS_MANUAL_ACQ);
     }
     
     /**
@@ -751,29 +909,72 @@ public class Acquisitions extends GenericSubsystem{
      * Sets up the live window screen used in test mode to control each system manually.
      */
     public void liveWindow() {
-        LiveWindow.addActuator(subsystemName, "Pivot", rotatingMotorPWM);
-        LiveWindow.addActuator(subsystemName, "Acquisitions", acqRollerPWM);
-        LiveWindow.addActuator(subsystemName, "Small Cylinder", acqShortPnu);
-        LiveWindow.addActuator(subsystemName, "Large Cylinder", acqLongPnu);
-        LiveWindow.addActuator(subsystemName, "Brake", tiltBrake);
+        LiveWindow.addActuator(subsystemName, "Pivot", rotatingMotorPWM.getTalon());
+        LiveWindow.addActuator(subsystemName, "Acquisitions", acqRollerPWM.getTalon());
+        LiveWindow.addActuator(subsystemName, "Small Cylinder", acqShortPnu.getSolenoid());
+        LiveWindow.addActuator(subsystemName, "Large Cylinder", acqLongPnu.getSolenoid());
+        LiveWindow.addActuator(subsystemName, "Brake", tiltBrake.getSolenoid());
         LiveWindow.addSensor(subsystemName, "Upper Limit Switch", upperLimit);
         LiveWindow.addSensor(subsystemName, "Lower Limit Switch", lowerLimit);
         LiveWindow.addSensor(subsystemName, "Ball Detector", ballDetector);
         LiveWindow.addSensor(subsystemName, "Pivot Encoder", rotateEncoder);
-        SmartDashboard.putBoolean(READY_TO_SHOOT_DISPLAY, false);
-        SmartDashboard.putNumber(WANTED_ANGLE_DISPLAY, 0);
+        DashboardPublisher dashboard = DashboardPublisher.getInstance();
+        readyToShootKey = dashboard.addBoolean(READY_TO_SHOOT_DISPLAY, false);
+        wantedAngleKey = dashboard.addNumber(WANTED_ANGLE_DISPLAY, 0);
+        brakeEnabledKey = dashboard.addBoolean("Brake Enabled", isBrakeEnabled);
     }
 
     public int sleepTime() {
         return 20;
     }
 
+    /**
+     * @return if the brake was enabled in the last published status
+     */
     public boolean isBrakeEnabled() {
-        return isBrakeEnabled;
+        return getStatus().isSet(STATUS_BRAKE_ENABLED);
     }
     
     public void setBrakeEnabled(boolean enabled){
-        isBrakeEnabled = enabled;
+        post(CMD_BRAKE_ENABLED, enabled ? 1 : 0, 0);
+    }
+    
+    /**
+     * Flips the brake on the acquisitions thread, so presses made before
+     * the last one is applied still each flip it.
+     */
+    public void toggleBrake(){
+        post(CMD_TOGGLE_BRAKE);
+    }
+    
+    /**
+     * Applies the commands posted by the public methods above, on the 
+     * acquisitions thread before execute().
+     */
+    protected void handleCommand(int command, double arg1, double arg2){
+        switch(command){
+            case CMD_SET_MODE:
+                changeMode((int)arg1);
+                break;
+            case CMD_SET_PRESET:
+                changePreset((int)arg1);
+                break;
+            case CMD_ADD_OFFSET:
+                applyOffset(arg1);
+                break;
+            case CMD_MANUAL_ACQ:
+                manaulAcquisition = (arg1 != 0);
+                break;
+            case CMD_BRAKE_ENABLED:
+                isBrakeEnabled = (arg1 != 0);
+                break;
+            case CMD_TOGGLE_BRAKE:
+                isBrakeEnabled = !isBrakeEnabled;
+                break;
+            default:
+                log.logError("Unknown command for acquisitions: " + command);
+                break;
+        }
     }
     
     /**
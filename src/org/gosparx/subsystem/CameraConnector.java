@@ -0,0 +1,141 @@
+package org.gosparx.subsystem;
+
+import edu.wpi.first.wpilibj.camera.AxisCamera;
+import edu.wpi.first.wpilibj.image.ColorImage;
+import org.gosparx.util.Clock;
+import org.gosparx.util.Logger;
+
+/**
+ * Connects to the camera on its own thread so {@link Vision} never blocks
+ * waiting for it. While the camera is not responding the connector asks it
+ * for an image, waiting twice as long after every failure up to
+ * {@link #MAX_BACKOFF}. Once an image comes back the camera is ready and the
+ * connector sleeps until Vision reports the camera {@link #lost()}.
+ */
+class CameraConnector extends Thread {
+
+    /**
+     * The time in ms to wait after the first failed attempt.
+     */
+    private static final int INITIAL_BACKOFF = 250;
+
+    /**
+     * The longest time in ms to wait between attempts.
+     */
+    private static final int MAX_BACKOFF = 4000;
+
+    /**
+     * The camera.
+     */
+    private final AxisCamera camera;
+
+    /**
+     * Used for logging connects and disconnects.
+     */
+    private final Logger log;
+
+    /**
+     * If the camera is responding.
+     */
+    private volatile boolean ready = false;
+
+    /**
+     * The {@link Clock} time in seconds the camera became ready, or 0.
+     */
+    private volatile double readyTime = 0;
+
+    /**
+     * The number of failed attempts since the camera was last ready.
+     */
+    private int attempts = 0;
+
+    /**
+     * The number of times the camera has connected.
+     */
+    private int connects = 0;
+
+    /**
+     * @param camera - the camera to connect to
+     * @param log - the logger to report on
+     */
+    CameraConnector(AxisCamera camera, Logger log){
+        super("CameraConnector");
+        setPriority(Thread.MIN_PRIORITY);
+        this.camera = camera;
+        this.log = log;
+    }
+
+    /**
+     * @return if the camera is responding
+     */
+    boolean isReady(){
+        return ready;
+    }
+
+    /**
+     * @return the {@link Clock} time in seconds the camera last became ready,
+     * or 0 if it never has
+     */
+    double getReadyTime(){
+        return readyTime;
+    }
+
+    /**
+     * @return the number of times the camera has connected
+     */
+    int getConnects(){
+        return connects;
+    }
+
+    /**
+     * Called by Vision when the camera stops responding. Starts reconnecting.
+     */
+    synchronized void lost(){
+        if(ready){
+            ready = false;
+            log.logError("Camera stopped responding, reconnecting");
+            notify();
+        }
+    }
+
+    /**
+     * Tries to reach the camera until it responds, then waits for it to be
+     * lost.
+     */
+    public void run(){
+        double start = 0;
+        int backoff = INITIAL_BACKOFF;
+        while(true){
+            synchronized(this){
+                while(ready){
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            if(attempts == 0){
+                start = Clock.get().seconds();
+            }
+            try {
+                ColorImage image = camera.getImage();
+                image.free();
+                connects++;
+                readyTime = Clock.get().seconds();
+                log.logMessage("Camera ready after " + (readyTime - start) + " s and " + attempts + " failed attempts");
+                attempts = 0;
+                backoff = INITIAL_BACKOFF;
+                ready = true;
+            } catch (Exception e) {
+                attempts++;
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ex) {
+                    ex.printStackTrace();
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        }
+    }
+}
@@ -1,9 +1,8 @@
 package org.gosparx.subsystem;
 
 import edu.wpi.first.wpilibj.Joystick;
-import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import org.gosparx.IO;
+import org.gosparx.util.DashboardPublisher;
 import org.gosparx.util.Logger;
 
 /**
@@ -35,6 +34,12 @@ public class Controls extends GenericSubsystem {
      */
     private static Controls controls;
 
+    /**
+     * Log templates for logInfo().
+     */
+    private static final int LOG_SPEEDS = Logger.template("Left Speed to Set: {} Right Speed to Set: {}");
+    private static final int LOG_JOYSTICK = Logger.template("Right Joystick Y: {} Right Joystick Last Y: {}");
+
     /**
      * The left driver joystick. Its port is stored in IO.java
      */
@@ -114,6 +119,24 @@ public class Controls extends GenericSubsystem {
      * The time between flashes
      */
     private static final double FLASH_TIME = 0.5;
+    
+    /**
+     * If the "10 Seconds Left" light is on.
+     */
+    private boolean tenSecondsFlash = false;
+    
+    /**
+     * The whole match second last sent to the dashboard, so the timer String 
+     * is only built once a second.
+     */
+    private int lastTimerSecond = -1;
+    
+    /**
+     * The {@link DashboardPublisher} handles for the match timer.
+     */
+    private int timerKey = -1;
+    private int numberTimerKey = -1;
+    private int tenSecondsKey = -1;
 
     /**
      * An instance of acquisitions.
@@ -337,6 +360,13 @@ public class Controls extends GenericSubsystem {
         shooter = Shooter.getInstance();
     }
 
+    /**
+     * Controls commands Drives, Acquisitions and Shooter.
+     */
+    protected GenericSubsystem[] getDependencies() {
+        return new GenericSubsystem[]{Drives.getInstance(), Acquisitions.getInstance(), Shooter.getInstance()};
+    }
+
     /**
      * Reassigns all of the variables and sets drives speed to the Y variables
      * of the driver joysticks
@@ -447,8 +477,8 @@ public class Controls extends GenericSubsystem {
                 shooter.setAdjustSlack(Shooter.MAX_UNWIND_INCHES);
             }
             //OFFSET
-            if (Timer.getFPGATimestamp() - OFFSET_TIME >= lastOffsetTime && ds.isEnabled() && (opL1 || opL2)) {
-                lastOffsetTime = Timer.getFPGATimestamp();
+            if (now() - OFFSET_TIME >= lastOffsetTime && ds.isEnabled() && (opL1 || opL2)) {
+                lastOffsetTime = now();
                 if (opL2 && !lastTrimDown) {
                     acq.addOffset(TRIM_ANGLE);
                 } else if (opL1 && !lastTrimUp) {
@@ -469,7 +499,7 @@ public class Controls extends GenericSubsystem {
             }
             
             if(opSelect && !lastOPSelect){
-                acq.setBrakeEnabled(!acq.isBrakeEnabled());
+                acq.toggleBrake();
             }
             
             if(opRightYAxis > 0.5){
@@ -480,7 +510,7 @@ public class Controls extends GenericSubsystem {
             
             smartDashboardTimer();
         } else {
-            startingMatchTime = Timer.getFPGATimestamp();
+            startingMatchTime = now();
         }
     }
 
@@ -500,22 +530,29 @@ public class Controls extends GenericSubsystem {
     }
 
     public void liveWindow() {
-        SmartDashboard.putNumber("Timer", 0);
-        SmartDashboard.putBoolean("10 Seconds Left", false);
+        DashboardPublisher dashboard = DashboardPublisher.getInstance();
+        timerKey = dashboard.addNumber("Timer", 0);
+        numberTimerKey = dashboard.addString("Number Timer", "0:00");
+        tenSecondsKey = dashboard.addBoolean("10 Seconds Left", false);
     }
 
     private void smartDashboardTimer() {
-        int matchTime = (int)(Timer.getFPGATimestamp() - startingMatchTime);
-        if(matchTime%60 < 10){
-            SmartDashboard.putString("Number Timer", matchTime/60 + ":0" + matchTime%60);
-        }else{
-            SmartDashboard.putString("Number Timer", matchTime/60 + ":" + matchTime%60);
+        DashboardPublisher dashboard = DashboardPublisher.getInstance();
+        int matchTime = (int)(now() - startingMatchTime);
+        if(matchTime != lastTimerSecond){
+            if(matchTime%60 < 10){
+                dashboard.setString(numberTimerKey, matchTime/60 + ":0" + matchTime%60);
+            }else{
+                dashboard.setString(numberTimerKey, matchTime/60 + ":" + matchTime%60);
+            }
+            dashboard.setNumber(timerKey, matchTime);
+            lastTimerSecond = matchTime;
         }
-        SmartDashboard.putNumber("Timer", matchTime);
-        if (Timer.getFPGATimestamp() - startingMatchTime > 130 && Timer.getFPGATimestamp() - startingMatchTime < 140) {//130, 140
-            if (Timer.getFPGATimestamp() - lastFlashTime >= FLASH_TIME) {
-                SmartDashboard.putBoolean("10 Seconds Left", !SmartDashboard.getBoolean("10 Seconds Left"));
-                lastFlashTime = Timer.getFPGATimestamp();
+        if (now() - startingMatchTime > 130 && now() - startingMatchTime < 140) {//130, 140
+            if (now() - lastFlashTime >= FLASH_TIME) {
+                tenSecondsFlash = !tenSecondsFlash;
+                dashboard.setBoolean(tenSecondsKey, tenSecondsFlash);
+                lastFlashTime = now();
             }
         }
     }
@@ -525,8 +562,7 @@ public class Controls extends GenericSubsystem {
     }
 
     public void logInfo() {
-        log.logMessage("Left Speed to Set: " + leftSpeedToSet + " Right Speed to Set: " + rightSpeedToSet);
-        log.logMessage("Right Joystick Y: " + driverRightYAxis + " Right Joystick Last Y: " + lastRightJoyYValue);
-        log.logMessage("Average Runtime: " + getAverageRuntime() + " sec");
+        log.logMessage(LOG_SPEEDS, leftSpeedToSet, rightSpeedToSet);
+        log.logMessage(LOG_JOYSTICK, driverRightYAxis, lastRightJoyYValue);
     }
 }
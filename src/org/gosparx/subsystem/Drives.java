@@ -7,12 +7,19 @@ import edu.wpi.first.wpilibj.Encoder;
 import edu.wpi.first.wpilibj.Gyro;
 import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj.Talon;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import org.gosparx.IO;
+import org.gosparx.output.CachedSolenoid;
+import org.gosparx.output.CachedTalon;
 import org.gosparx.sensors.EncoderData;
+import org.gosparx.sensors.SensorFrame;
+import org.gosparx.sensors.SensorSampler;
+import org.gosparx.util.Clock;
+import org.gosparx.util.DashboardPublisher;
+import org.gosparx.util.LogLimit;
 import org.gosparx.util.Logger;
+import org.gosparx.util.PersistentStore;
+import org.gosparx.util.Telemetry;
 
 /**
  * The purpose of this class is to implement the drives subsystem.  This class 
@@ -31,6 +38,23 @@ public class Drives extends GenericSubsystem {
      * The name of the subsystem for liveWindow
      */
     private final String subsystemName = "Drives";
+
+    /**
+     * Log templates for logInfo(), so the numbers are logged without
+     * building Strings.
+     */
+    private static final int LOG_GYRO = Logger.template("Gyro: {}");
+    private static final int LOG_GYRO_VOLTAGE = Logger.template("Gyro Voltage: {}");
+    private static final int LOG_WANTED = Logger.template("Left Wanted: {} Right Wanted: {}");
+    private static final int LOG_OUTPUT = Logger.template("Left Motor Output: {} Right Motor Output: {}");
+    private static final int LOG_DISTANCE = Logger.template("Left Encoder Distance: {} Right Encoder Distance: {}");
+    private static final int LOG_RATE = Logger.template("Left Encoder Rate: {} Right Encoder Rate:{}");
+    private static final int LOG_TURN = Logger.template("COMPLETED: {i} Loops || Gyro: {} DegToGo: {}");
+
+    /**
+     * Turning progress is logged every loop, so it is rate limited.
+     */
+    private final LogLimit turnLogLimit = log.limit("Drives.turn", 5, 5);
     
     /**
      * The distance the robot travels per tick of the encoder.
@@ -103,6 +127,27 @@ public class Drives extends GenericSubsystem {
      * Number of loops turning must go through to determine accuracy.
      */
     private static final int TURN_COMPLETE_COUNTER = 3;
+    
+    /**
+     * The commands other subsystems post to drives.
+     */
+    private static final int CMD_SET_SPEED          = 0;
+    private static final int CMD_TURN               = 1;
+    private static final int CMD_DRIVE_STRAIGHT     = 2;
+    private static final int CMD_FORCE_LOW_GEAR     = 3;
+    private static final int CMD_SHIFT_UP           = 4;
+    private static final int CMD_SHIFT_DOWN         = 5;
+    private static final int CMD_MANUAL_SHIFTING    = 6;
+    private static final int CMD_START_HOLD_POS     = 7;
+    private static final int CMD_STOP_HOLD_POS      = 8;
+    
+    /**
+     * The flags in the drives {@link SubsystemStatus}. Its state is the auto 
+     * function state, measurement 1 is the gyro angle and measurement 2 is the
+     * average encoder distance.
+     */
+    public static final int STATUS_DONE             = 1;
+    public static final int STATUS_HIGH_GEAR        = 2;
         
     /**
      * This is the speed in inches per second we want the left side of the 
@@ -113,17 +158,17 @@ public class Drives extends GenericSubsystem {
     /**
      * This is controlling the left front drives motor.
      */
-    private Talon leftFrontDrives;
+    private CachedTalon leftFrontDrives;
     
     /**
      * This is controlling the left rear drives motor.
      */
-    private Talon leftRearDrives;
+    private CachedTalon leftRearDrives;
     
     /**
      * This is controlling the bottom left drives.
      */ 
-    private Talon leftBottomDrives;
+    private CachedTalon leftBottomDrives;
     
     /**
      * This is the encoder on the left side of the robot.
@@ -139,17 +184,17 @@ public class Drives extends GenericSubsystem {
     /**
      * This is controlling the right front drives motor.
      */
-    private Talon rightFrontDrives;
+    private CachedTalon rightFrontDrives;
     
     /**
      * This is controlling the right rear drives motor.
      */
-    private Talon rightRearDrives;
+    private CachedTalon rightRearDrives;
     
     /**
      * This is controlling the bottom right drives.
      */ 
-    private Talon rightBottomDrives;
+    private CachedTalon rightBottomDrives;
     
     /**
      * This is the encoder on the right side of the robot.
@@ -167,8 +212,7 @@ public class Drives extends GenericSubsystem {
     private EncoderData leftEncoderData;
     
     /**
-     * The time from the {@link Timer#getFPGATimestamp() FPGA Timestamp} that we
-     * shifted.
+     * The time from the {@link Clock} that we shifted.
      */
     private double shiftTime;
         
@@ -191,7 +235,7 @@ public class Drives extends GenericSubsystem {
     /**
      * The solenoid that controls the pneumatics to shift the drives.
      */
-    private Solenoid shifter;
+    private CachedSolenoid shifter;
     
     /**
      * The Gyro used for turning calculations
@@ -207,6 +251,13 @@ public class Drives extends GenericSubsystem {
      * Error to see if the gyro is responding. Used in gyroCheck();
      */
     private static final double GYRO_ERROR = 1;//got this by unplugging encoder and seeing what values it gave
+    
+    /**
+     * The gyro's volts per degree per second, unless the {@link PersistentStore}
+     * has a calibrated value under GYRO_SENSITIVITY_KEY.
+     */
+    private static final double GYRO_SENSITIVITY = 0.007;
+    private static final String GYRO_SENSITIVITY_KEY = "drives.gyroSensitivity";
 
     /**
      * Makes sure that the gyro is functioning
@@ -272,8 +323,40 @@ public class Drives extends GenericSubsystem {
      */
     private static final String smartAutoShiftingName = "Auto Shifting";
     
+    /**
+     * The {@link DashboardPublisher} handle for smartAutoShiftingName.
+     */
+    private int autoShiftingKey = -1;
+    
     private double leftMotorOutput = 0; 
     private double rightMotorOutput = 0;
+    
+    /**
+     * The newest sensor readings from the {@link SensorSampler}.
+     */
+    private SensorFrame sensorFrame = new SensorFrame();
+    
+    /**
+     * The {@link Clock} time in microseconds the gyro or encoders were last 
+     * reset. Sensor frames older than this are ignored.
+     */
+    private volatile long lastSensorReset = 0;
+    
+    /**
+     * Records the drive loop every loop while enabled, for tuning.
+     */
+    private Telemetry telemetry;
+    
+    /**
+     * The telemetry channels.
+     */
+    private int telLeftSpeed;
+    private int telRightSpeed;
+    private int telLeftOutput;
+    private int telRightOutput;
+    private int telAngle;
+    private int telDrivesState;
+    private int telFunctionState;
         
     /**
      * Look to see if there is a drive class, if not it creates one
@@ -301,17 +384,17 @@ public class Drives extends GenericSubsystem {
      * {@link GenericSubsystem#init() here}.
      */
     public void init() {
-        leftFrontDrives = new Talon(IO.DEFAULT_SLOT, IO.LEFT_FRONT_DRIVES_PWM);
-        leftRearDrives = new Talon(IO.DEFAULT_SLOT, IO.LEFT_REAR_DRIVES_PWM);
-        leftBottomDrives = new Talon(IO.DEFAULT_SLOT, IO.LEFT_BOTTOM_DRIVES_PWM);
+        leftFrontDrives = outputs.add(new Talon(IO.DEFAULT_SLOT, IO.LEFT_FRONT_DRIVES_PWM));
+        leftRearDrives = outputs.add(new Talon(IO.DEFAULT_SLOT, IO.LEFT_REAR_DRIVES_PWM));
+        leftBottomDrives = outputs.add(new Talon(IO.DEFAULT_SLOT, IO.LEFT_BOTTOM_DRIVES_PWM));
         leftDrivesEncoder = new Encoder(IO.DEFAULT_SLOT, IO.LEFT_DRIVES_ENCODER_CHAN_1,IO.DEFAULT_SLOT,IO.LEFT_DRIVES_ENCODER_CHAN_2, false, EncodingType.k4X);
         leftDrivesEncoder.setDistancePerPulse(DIST_PER_TICK);
         leftEncoderData = new EncoderData(leftDrivesEncoder, DIST_PER_TICK);
         leftDrivesEncoder.start();
         
-        rightFrontDrives = new Talon(IO.DEFAULT_SLOT, IO.RIGHT_FRONT_DRIVES_PWM);
-        rightRearDrives = new Talon(IO.DEFAULT_SLOT, IO.RIGHT_REAR_DRIVES_PWM);
-        rightBottomDrives = new Talon(IO.DEFAULT_SLOT, IO.RIGHT_BOTTOM_DRIVES_PWM);
+        rightFrontDrives = outputs.add(new Talon(IO.DEFAULT_SLOT, IO.RIGHT_FRONT_DRIVES_PWM));
+        rightRearDrives = outputs.add(new Talon(IO.DEFAULT_SLOT, IO.RIGHT_REAR_DRIVES_PWM));
+        rightBottomDrives = outputs.add(new Talon(IO.DEFAULT_SLOT, IO.RIGHT_BOTTOM_DRIVES_PWM));
         rightDrivesEncoder = new Encoder(IO.DEFAULT_SLOT, IO.RIGHT_DRIVES_ENCODER_CHAN_1, IO.DEFAULT_SLOT, IO.RIGHT_DRIVES_ENCODER_CHAN_2, true, EncodingType.k4X);
         rightDrivesEncoder.setDistancePerPulse(DIST_PER_TICK);
         rightEncoderData = new EncoderData(rightDrivesEncoder, DIST_PER_TICK);
@@ -319,19 +402,30 @@ public class Drives extends GenericSubsystem {
         
         compressor = new Compressor(IO.DEFAULT_SLOT, IO.PRESSURE_SWITCH_CHAN, IO.DEFAULT_SLOT, IO.COMPRESSOR_RELAY_CHAN);
         compressor.start();
-        shifter = new Solenoid(IO.DEFAULT_SLOT, IO.SHIFT_CHAN);
+        shifter = outputs.add(new Solenoid(IO.DEFAULT_SLOT, IO.SHIFT_CHAN));
         shifter.set(LOW_GEAR);
  
         gyroAnalog = new AnalogChannel(IO.DEFAULT_SLOT, IO.GYRO_ANALOG);
         gyro = new Gyro(gyroAnalog);
-        gyro.setSensitivity(0.007);
+        gyro.setSensitivity(PersistentStore.getInstance().getDouble(GYRO_SENSITIVITY_KEY, GYRO_SENSITIVITY));
         isGyroWorking = gyroCheck();
+        SensorSampler.getInstance().registerGyro(SensorSampler.GYRO_ANGLE, gyro);
+        SensorSampler.getInstance().registerEncoder(SensorSampler.LEFT_DRIVES_DISTANCE, leftDrivesEncoder);
+        SensorSampler.getInstance().registerEncoder(SensorSampler.RIGHT_DRIVES_DISTANCE, rightDrivesEncoder);
         drivesState = State.DRIVES_LOW_GEAR;
         autoFunctionState = State.FUNCT_STANDBY;
-        shiftTime = Timer.getFPGATimestamp();
+        shiftTime = Clock.get().seconds();
         leftMotorOutput = 0; 
         rightMotorOutput = 0;
         resetSensors();
+        telemetry = new Telemetry(Logger.SUB_DRIVES);
+        telLeftSpeed = telemetry.addDouble("leftSpeed");
+        telRightSpeed = telemetry.addDouble("rightSpeed");
+        telLeftOutput = telemetry.addDouble("leftOutput");
+        telRightOutput = telemetry.addDouble("rightOutput");
+        telAngle = telemetry.addDouble("angle");
+        telDrivesState = telemetry.addInt("drivesState");
+        telFunctionState = telemetry.addInt("functionState");
     }
 
     /**
@@ -340,16 +434,25 @@ public class Drives extends GenericSubsystem {
      * @throws Exception if anything goes wrong!
      */
     public void execute() throws Exception {
-        double leftCurrentSpeed, rightCurrentSpeed;
+        double leftCurrentSpeed, rightCurrentSpeed, leftDistance, rightDistance;
         
-        currentAngle = gyro.getAngle();
+        SensorSampler.getInstance().read(sensorFrame);
+        if(sensorFrame.getTimestamp() > lastSensorReset){
+            currentAngle = sensorFrame.getDouble(SensorSampler.GYRO_ANGLE);
+            leftDistance = sensorFrame.getDouble(SensorSampler.LEFT_DRIVES_DISTANCE);
+            rightDistance = sensorFrame.getDouble(SensorSampler.RIGHT_DRIVES_DISTANCE);
+        }else{
+            currentAngle = gyro.getAngle();
+            leftDistance = leftEncoderData.getDistance();
+            rightDistance = rightEncoderData.getDistance();
+        }
         leftEncoderData.calculateSpeed();
         rightEncoderData.calculateSpeed();
         leftCurrentSpeed = leftEncoderData.getSpeed();
         rightCurrentSpeed = rightEncoderData.getSpeed();
         double averageSpeed = Math.abs((leftCurrentSpeed+rightCurrentSpeed)/2);
         boolean areBothDriving = leftCurrentSpeed != 0 && rightCurrentSpeed != 0;
-        averageDistEncoder = (leftEncoderData.getDistance() + rightEncoderData.getDistance())/2;
+        averageDistEncoder = (leftDistance + rightDistance)/2;
         
         switch(autoFunctionState){
             case State.FUNCT_TURNING:
@@ -366,13 +469,15 @@ public class Drives extends GenericSubsystem {
                         log.logMessage("Done Turning");
                         leftMotorOutput = 0;
                         rightMotorOutput = 0;
-                        startHoldPos();
+                        holdPosition();
                     }else if(Math.abs(degToGo) < TURNING_THRESHOLD){
                         turnLoopCounter++;
                     }else{
                         turnLoopCounter = 0;
                     }
-                    log.logMessage("COMPLETED: " + turnLoopCounter + " Loops || Gyro: "  + currentAngle + " DegToGo: " + degToGo);
+                    if(log.allow(turnLogLimit)){
+                        log.logMessage(LOG_TURN, turnLoopCounter, currentAngle, degToGo);
+                    }
                 }else{
                     autoFunctionState = State.FUNCT_HOLD_POS;
                 } 
@@ -380,16 +485,16 @@ public class Drives extends GenericSubsystem {
             case State.FUNCT_DRIVE_STRAIGHT:
                 leftMotorOutput = getMotorOutput(wantedLeftSpeed, leftCurrentSpeed, leftMotorOutput);
                 rightMotorOutput = getMotorOutput(wantedRightSpeed, rightCurrentSpeed, rightMotorOutput);
-                if(inchesToGo - leftEncoderData.getDistance() < DRIVING_THRESHOLD){
+                if(inchesToGo - leftDistance < DRIVING_THRESHOLD){
                     leftMotorOutput = 0;
                 }
-                if(inchesToGo - rightEncoderData.getDistance() < DRIVING_THRESHOLD){
+                if(inchesToGo - rightDistance < DRIVING_THRESHOLD){
                     rightMotorOutput = 0;
                 }
-                if(inchesToGo - rightEncoderData.getDistance() < DRIVING_THRESHOLD && 
-                        inchesToGo - leftEncoderData.getDistance() < DRIVING_THRESHOLD){
+                if(inchesToGo - rightDistance < DRIVING_THRESHOLD && 
+                        inchesToGo - leftDistance < DRIVING_THRESHOLD){
                     log.logMessage("Done Driving Straight.");
-                    setSpeed(0, 0);
+                    setWantedSpeed(0, 0);
                     resetSensors();
                     autoFunctionState = State.FUNCT_STANDBY;
                 }
@@ -397,10 +502,10 @@ public class Drives extends GenericSubsystem {
             case State.FUNCT_HOLD_POS:
                 leftMotorOutput = 0;
                 rightMotorOutput = 0;
-                if(gyro.getAngle() > TURNING_THRESHOLD){
+                if(currentAngle > TURNING_THRESHOLD){
                         leftMotorOutput = -((degToGo < -TURNING_MAX_HOLD) ? (1) : (((1-Y_INTERCEPT_HOLD)/TURNING_MAX_HOLD)*degToGo+Y_INTERCEPT_HOLD));
                         rightMotorOutput = (degToGo < -TURNING_MAX_HOLD) ? (1) : (((1-Y_INTERCEPT_HOLD)/TURNING_MAX_HOLD)*degToGo+Y_INTERCEPT_HOLD);
-                } else if(gyro.getAngle() < -TURNING_THRESHOLD){
+                } else if(currentAngle < -TURNING_THRESHOLD){
                     leftMotorOutput = (degToGo > TURNING_MAX_HOLD) ? (1) : (((1-Y_INTERCEPT_HOLD)/TURNING_MAX_HOLD)*degToGo+Y_INTERCEPT_HOLD);
                     rightMotorOutput = -((degToGo > TURNING_MAX_HOLD) ? (1) : (((1-Y_INTERCEPT_HOLD)/TURNING_MAX_HOLD)*degToGo+Y_INTERCEPT_HOLD));
                 }
@@ -428,7 +533,7 @@ public class Drives extends GenericSubsystem {
                     log.logMessage("Up Shift!");
                     shifter.set(!LOW_GEAR);
                     drivesState = State.DRIVES_SHIFT_HIGH_GEAR;
-                    shiftTime = Timer.getFPGATimestamp();
+                    shiftTime = now();
                 }
                 break;
             case State.DRIVES_HIGH_GEAR:
@@ -438,20 +543,20 @@ public class Drives extends GenericSubsystem {
                     log.logMessage("Down Shift!");
                     shifter.set(LOW_GEAR);
                     drivesState = State.DRIVES_SHIFT_LOW_GEAR;
-                    shiftTime = Timer.getFPGATimestamp();
+                    shiftTime = now();
                 }
                 break;
             case State.DRIVES_SHIFT_LOW_GEAR:
-                if(Timer.getFPGATimestamp() > shiftTime + SHIFT_TIME){
+                if(now() > shiftTime + SHIFT_TIME){
                     drivesState = State.DRIVES_LOW_GEAR;
                 }
-//                setSpeed(((wantedLeftSpeed > 0) ? MOTOR_SHIFTING_SPEED : -MOTOR_SHIFTING_SPEED), ((wantedRightSpeed > 0) ? MOTOR_SHIFTING_SPEED : -MOTOR_SHIFTING_SPEED));
+//                setWantedSpeed(((wantedLeftSpeed > 0) ? MOTOR_SHIFTING_SPEED : -MOTOR_SHIFTING_SPEED), ((wantedRightSpeed > 0) ? MOTOR_SHIFTING_SPEED : -MOTOR_SHIFTING_SPEED));
                 break;
             case State.DRIVES_SHIFT_HIGH_GEAR:
-                if(Timer.getFPGATimestamp() > shiftTime + SHIFT_TIME){
+                if(now() > shiftTime + SHIFT_TIME){
                     drivesState = State.DRIVES_HIGH_GEAR;
                 }
-                setSpeed(((wantedLeftSpeed > 0) ? MOTOR_SHIFTING_SPEED : -MOTOR_SHIFTING_SPEED), ((wantedRightSpeed > 0) ? MOTOR_SHIFTING_SPEED : -MOTOR_SHIFTING_SPEED));
+                setWantedSpeed(((wantedLeftSpeed > 0) ? MOTOR_SHIFTING_SPEED : -MOTOR_SHIFTING_SPEED), ((wantedRightSpeed > 0) ? MOTOR_SHIFTING_SPEED : -MOTOR_SHIFTING_SPEED));
                 break;
             default:
                 log.logError("Unknown state for drives: " + drivesState);
@@ -467,20 +572,49 @@ public class Drives extends GenericSubsystem {
         rightRearDrives.set(-rightMotorOutput);
         rightBottomDrives.set(rightMotorOutput);
         updatedSmartDashboard();
+        int flags = 0;
+        if(autoFunctionState == State.FUNCT_HOLD_POS || autoFunctionState == State.FUNCT_STANDBY){
+            flags |= STATUS_DONE;
+        }
+        if(drivesState == State.DRIVES_HIGH_GEAR){
+            flags |= STATUS_HIGH_GEAR;
+        }
+        publishStatus(autoFunctionState, flags, currentAngle, averageDistEncoder);
+        recordTelemetry(leftCurrentSpeed, rightCurrentSpeed);
+    }
+    
+    /**
+     * Samples the telemetry channels while enabled.
+     * 
+     * @param leftSpeed the left drives speed this loop
+     * @param rightSpeed the right drives speed this loop
+     */
+    private void recordTelemetry(double leftSpeed, double rightSpeed){
+        if(!ds.isEnabled()){
+            telemetry.endBlock();
+            return;
+        }
+        telemetry.set(telLeftSpeed, leftSpeed);
+        telemetry.set(telRightSpeed, rightSpeed);
+        telemetry.set(telLeftOutput, leftMotorOutput);
+        telemetry.set(telRightOutput, rightMotorOutput);
+        telemetry.set(telAngle, currentAngle);
+        telemetry.set(telDrivesState, drivesState);
+        telemetry.set(telFunctionState, autoFunctionState);
+        telemetry.sample();
     }
     
     /**
      * Logs info about the drives subsystem
      */
     public void logInfo(){
-        log.logMessage("Gyro: " + gyro.getAngle());
-        log.logMessage("Gyro Voltage: " + gyroAnalog.getVoltage());
-        log.logMessage("Left Wanted: " + wantedLeftSpeed + " Right Wanted: " + wantedRightSpeed);
-        log.logMessage("Left Motor Output: " + leftMotorOutput + " Right Motor Output: " + rightMotorOutput);
-        log.logMessage("Left Encoder Distance: " + leftEncoderData.getDistance() + " Right Encoder Distance: " + rightEncoderData.getDistance());
-        log.logMessage("Left Encoder Rate: " + leftEncoderData.getSpeed() + " Right Encoder Rate:" + rightEncoderData.getSpeed());
+        log.logMessage(LOG_GYRO, gyro.getAngle());
+        log.logMessage(LOG_GYRO_VOLTAGE, gyroAnalog.getVoltage());
+        log.logMessage(LOG_WANTED, wantedLeftSpeed, wantedRightSpeed);
+        log.logMessage(LOG_OUTPUT, leftMotorOutput, rightMotorOutput);
+        log.logMessage(LOG_DISTANCE, leftEncoderData.getDistance(), rightEncoderData.getDistance());
+        log.logMessage(LOG_RATE, leftEncoderData.getSpeed(), rightEncoderData.getSpeed());
         log.logMessage("Shift State = " + State.getState(drivesState) + " Functions State: " + State.getState(autoFunctionState));
-        log.logMessage("Average Runtime: " + getAverageRuntime() + "seconds");
         
     }
     
@@ -512,8 +646,7 @@ public class Drives extends GenericSubsystem {
      * else motor output
      */
     public void setSpeed(double left, double right){
-        wantedLeftSpeed = left;
-        wantedRightSpeed = right;
+        post(CMD_SET_SPEED, left, right);
     }
     
     /**
@@ -522,9 +655,7 @@ public class Drives extends GenericSubsystem {
      * values to turn left 
      */
     public void turn(double degrees){
-        resetGyro();
-        desiredAngle = degrees;
-        autoFunctionState = State.FUNCT_TURNING;
+        post(CMD_TURN, degrees, 0);
     }
     
     /**
@@ -535,31 +666,26 @@ public class Drives extends GenericSubsystem {
      * @param speed the speed in Inches per Second you want to go
      */
     public void driveStraight(double inches, double speed){
-        resetEncoders();
-        inchesToGo = inches;
-        setSpeed(speed, speed);
-        autoFunctionState = State.FUNCT_DRIVE_STRAIGHT;
+        post(CMD_DRIVE_STRAIGHT, inches, speed);
     }
     /**
      * Forces drives to stay in low gear or to release it from low gear
      * @param stayInLowGear - whether or not to force low gear
      */
     public void forceLowGear(boolean stayInLowGear){
-        forceLowGear = stayInLowGear;
+        post(CMD_FORCE_LOW_GEAR, stayInLowGear ? 1 : 0, 0);
     }
      /**
      * Sets the drives to shift up if manualShifting is true
      */
     public void manualShiftUp(){
-        needsToManuallyShiftUp = true;
-        log.logMessage("Manually shifting Up");
+        post(CMD_SHIFT_UP);
     }
     /**
      * Sets the drives to shift down if manualShifting is true
      */
     public void manualShiftDown(){
-        needsToManuallyShiftDown = true;
-        log.logMessage("Manually shifting Down");
+        post(CMD_SHIFT_DOWN);
     }
     /**
      * Sets manualShifting to manual. If manualShifting is true, it will disable
@@ -567,7 +693,7 @@ public class Drives extends GenericSubsystem {
      * @param manual - whether or not manual shifting is enabled
      */
     public void setManualShifting(boolean manual){
-        manualShifting = manual;
+        post(CMD_MANUAL_SHIFTING, manual ? 1 : 0, 0);
     }
     /**
      * Resets the encoders and gyro and sets the state to HOLD_POS. It will
@@ -575,16 +701,80 @@ public class Drives extends GenericSubsystem {
      * stopHoldPos() is called
      */
     public void startHoldPos(){
-        if(autoFunctionState != State.FUNCT_HOLD_POS){
-            resetSensors();
-            autoFunctionState = State.FUNCT_HOLD_POS;
-        }
+        post(CMD_START_HOLD_POS);
     }
     /**
      * Stops the holding of the position saved when startHoldPos() was called
      */
     public void stopHoldPos(){
-        autoFunctionState = State.FUNCT_STANDBY;
+        post(CMD_STOP_HOLD_POS);
+    }
+    
+    /**
+     * Applies the commands posted by the public methods above, on the drives
+     * thread before execute().
+     */
+    protected void handleCommand(int command, double arg1, double arg2){
+        switch(command){
+            case CMD_SET_SPEED:
+                setWantedSpeed(arg1, arg2);
+                break;
+            case CMD_TURN:
+                resetGyro();
+                desiredAngle = arg1;
+                autoFunctionState = State.FUNCT_TURNING;
+                break;
+            case CMD_DRIVE_STRAIGHT:
+                resetEncoders();
+                inchesToGo = arg1;
+                setWantedSpeed(arg2, arg2);
+                autoFunctionState = State.FUNCT_DRIVE_STRAIGHT;
+                break;
+            case CMD_FORCE_LOW_GEAR:
+                forceLowGear = (arg1 != 0);
+                break;
+            case CMD_SHIFT_UP:
+                needsToManuallyShiftUp = true;
+                log.logMessage("Manually shifting Up");
+                break;
+            case CMD_SHIFT_DOWN:
+                needsToManuallyShiftDown = true;
+                log.logMessage("Manually shifting Down");
+                break;
+            case CMD_MANUAL_SHIFTING:
+                manualShifting = (arg1 != 0);
+                break;
+            case CMD_START_HOLD_POS:
+                holdPosition();
+                break;
+            case CMD_STOP_HOLD_POS:
+                autoFunctionState = State.FUNCT_STANDBY;
+                break;
+            default:
+                log.logError("Unknown command for drives: " + command);
+                break;
+        }
+    }
+    
+    /**
+     * Sets the wanted speed of each side right away. Drives thread only.
+     * @param left - the left speed
+     * @param right - the right speed
+     */
+    private void setWantedSpeed(double left, double right){
+        wantedLeftSpeed = left;
+        wantedRightSpeed = right;
+    }
+    
+    /**
+     * Resets the sensors and holds the current position, if not already
+     * holding. Drives thread only.
+     */
+    private void holdPosition(){
+        if(autoFunctionState != State.FUNCT_HOLD_POS){
+            resetSensors();
+            autoFunctionState = State.FUNCT_HOLD_POS;
+        }
     }
     
     /**
@@ -595,6 +785,8 @@ public class Drives extends GenericSubsystem {
         rightEncoderData.reset();
         leftDrivesEncoder.reset();
         leftEncoderData.reset();
+        //Marked after the reset, a frame sampled during it can hold old counts
+        lastSensorReset = Clock.get().micros();
     }
     
     /**
@@ -602,6 +794,7 @@ public class Drives extends GenericSubsystem {
      */
     private void resetGyro(){
         gyro.reset();
+        lastSensorReset = Clock.get().micros();
     }
     
     /**
@@ -625,23 +818,35 @@ public class Drives extends GenericSubsystem {
      * Returns if the last command is done
      */
     public boolean isLastCommandDone() {
-        return (autoFunctionState == State.FUNCT_HOLD_POS || autoFunctionState == State.FUNCT_STANDBY);
+        return !hasPendingCommands() && getStatus().isSet(STATUS_DONE);
+    }
+    
+    /**
+     * Stops all of the drives motors.
+     */
+    protected void safeOutput(){
+        leftFrontDrives.setNow(0);
+        leftRearDrives.setNow(0);
+        leftBottomDrives.setNow(0);
+        rightFrontDrives.setNow(0);
+        rightRearDrives.setNow(0);
+        rightBottomDrives.setNow(0);
     }
     
     private void updatedSmartDashboard(){
-        SmartDashboard.putBoolean(smartAutoShiftingName, !manualShifting);
+        DashboardPublisher.getInstance().setBoolean(autoShiftingKey, !manualShifting);
     }
 
     public void liveWindow() {
-        LiveWindow.addActuator(subsystemName, "Right Front", rightFrontDrives);
-        LiveWindow.addActuator(subsystemName, "Right Back", rightFrontDrives);
+        LiveWindow.addActuator(subsystemName, "Right Front", rightFrontDrives.getTalon());
+        LiveWindow.addActuator(subsystemName, "Right Back", rightFrontDrives.getTalon());
         LiveWindow.addSensor(subsystemName, "Right Encoder", rightDrivesEncoder);
-        LiveWindow.addActuator(subsystemName, "Left Front", rightFrontDrives);
-        LiveWindow.addActuator(subsystemName, "Left Back", rightFrontDrives);
+        LiveWindow.addActuator(subsystemName, "Left Front", rightFrontDrives.getTalon());
+        LiveWindow.addActuator(subsystemName, "Left Back", rightFrontDrives.getTalon());
         LiveWindow.addSensor(subsystemName, "Left Encoder", leftDrivesEncoder);
-        LiveWindow.addActuator(subsystemName, "Shifting", shifter);
+        LiveWindow.addActuator(subsystemName, "Shifting", shifter.getSolenoid());
         LiveWindow.addSensor(subsystemName, "GYRO", gyro);
-        SmartDashboard.putBoolean(smartAutoShiftingName, true);
+        autoShiftingKey = DashboardPublisher.getInstance().addBoolean(smartAutoShiftingName, true);
     }
 
     public int sleepTime(){
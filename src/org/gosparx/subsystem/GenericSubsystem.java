@@ -1,6 +1,11 @@
 package org.gosparx.subsystem;
-import edu.wpi.first.wpilibj.DriverStation;
-import edu.wpi.first.wpilibj.Timer;
+import org.gosparx.output.OutputCache;
+import org.gosparx.util.Clock;
+import org.gosparx.util.CommandHandler;
+import org.gosparx.util.CommandRing;
+import org.gosparx.util.DriverStationSnapshot;
+import org.gosparx.util.FlightRecorder;
+import org.gosparx.util.LatencyHistogram;
 import org.gosparx.util.Logger;
 
 /**
@@ -13,15 +18,22 @@ import org.gosparx.util.Logger;
 public abstract class GenericSubsystem extends Thread {
     
     /**
-     * An Instance of DriverStation
+     * The DriverStation snapshot for the current loop. Refreshed at the start
+     * of every loop, use it instead of calling the DriverStation directly.
      */
-    protected DriverStation ds;
+    protected DriverStationSnapshot ds;
     
     /**
      * A logger. This is used for logging purposes
      */
     protected Logger log;
     
+    /**
+     * The actuators of this subsystem. Wrap every Talon and Solenoid with it
+     * in init(), values set during execute() are written when it returns.
+     */
+    protected final OutputCache outputs = new OutputCache();
+    
     /**
      * The time in seconds between logging
      */
@@ -33,25 +45,172 @@ public abstract class GenericSubsystem extends Thread {
     protected double lastLogTime;
     
     /**
-     * The number of times stored for the average times.
+     * The time execute() takes, in microseconds.
      */
-    private final static int RING_LENGTH = 10;
+    private final LatencyHistogram executeTimes = new LatencyHistogram();
     
     /**
-     * The ring buffer for average run times.
-     */ 
-    private double[] ringBuffer = new double[RING_LENGTH];
+     * How late each loop started compared to when it was scheduled to, in 
+     * microseconds.
+     */
+    private final LatencyHistogram wakeJitter = new LatencyHistogram();
     
     /**
-     * The starting location for the ring buffer.
-     */ 
-    private int ringLoc = 0;
+     * The time between the start of each loop, in microseconds.
+     */
+    private final LatencyHistogram periodTimes = new LatencyHistogram();
     
     /**
-     * The start time for the current loop. Used in average runtime calculations.
-     */ 
-    private double startTime;
+     * The FPGA time in microseconds the last loop started at.
+     */
+    private long lastStartTime = 0;
+    
+    /**
+     * The time in seconds captured at the start of the current loop. Returned
+     * by {@link #now()}.
+     */
+    private double loopTime = 0;
+    
+    /**
+     * The robot mode during the last loop. Used to reset the histograms when
+     * the mode changes.
+     */
+    private int lastMode = -1;
+    
+    /**
+     * The FPGA time in microseconds the current or last execute() started.
+     * Read by the {@link Watchdog} without locking.
+     */
+    private volatile long heartbeatStart = 0;
+    
+    /**
+     * The FPGA time in microseconds the last loop finished. 0 until the first
+     * loop has finished. Read by the {@link Watchdog} without locking.
+     */
+    private volatile long heartbeatFinish = 0;
+    
+    /**
+     * The p99 execute() time in microseconds, taken from the histogram on
+     * this subsystem's own thread every LOG_EVERY seconds and before a mode
+     * change resets it, so other threads never read the live histogram.
+     */
+    private volatile long executeP99 = 0;
+    
+    /**
+     * The most threads that can post commands to one subsystem.
+     */
+    private static final int MAX_PRODUCERS = 8;
+    
+    /**
+     * One command ring for each thread that has posted to this subsystem.
+     */
+    private final CommandRing[] commandRings = new CommandRing[MAX_PRODUCERS];
+    
+    /**
+     * The number of command rings.
+     */
+    private volatile int ringCount = 0;
+    
+    /**
+     * Hands drained commands to {@link #handleCommand}, which stays protected
+     * so only this subsystem's own thread applies commands.
+     */
+    private final CommandHandler commandHandler = new CommandHandler(){
+        public void handleCommand(int command, double arg1, double arg2){
+            GenericSubsystem.this.handleCommand(command, arg1, arg2);
+        }
+    };
+    
+    /**
+     * The time from a command being posted to the end of the loop that 
+     * applied it and wrote the outputs, in microseconds.
+     */
+    private final LatencyHistogram commandLatency = new LatencyHistogram();
+    
+    /**
+     * True from the time posted commands start being applied until the status
+     * of that loop has been published.
+     */
+    private volatile boolean applyingCommands = false;
+    
+    /**
+     * The newest published status.
+     */
+    private volatile SubsystemStatus status = SubsystemStatus.NONE;
+    
+    /**
+     * Notified every time a status is published.
+     */
+    private final Object statusLock = new Object();
+    
+    /**
+     * The last loops of this subsystem, dumped when it throws or stalls.
+     */
+    private final FlightRecorder recorder;
+    
+    /**
+     * Guards the init state below.
+     */
+    private final Object initLock = new Object();
+    
+    /**
+     * If {@link #initSubsystem()} has been called.
+     */
+    private boolean initStarted = false;
+    
+    /**
+     * If init() and liveWindow() have returned.
+     */
+    private boolean initDone = false;
+    
+    /**
+     * The time in microseconds init() and liveWindow() took.
+     */
+    private long initTime = 0;
+    
+    private static final int MODE_DISABLED = 0;
+    private static final int MODE_AUTO = 1;
+    private static final int MODE_TELEOP = 2;
+    
+    /**
+     * Sleep {@link #sleepTime()} after every execute(). The real period is 
+     * the execute time plus the sleep.
+     */
+    public static final int PERIOD_FIXED_SLEEP = 0;
+    
+    /**
+     * Run on absolute deadlines. If a loop runs late the next one starts right
+     * away and any whole periods that were missed are skipped, so the loop 
+     * stays in phase.
+     */
+    public static final int PERIOD_SKIP = 1;
+    
+    /**
+     * Run on absolute deadlines. If a loop runs late the missed periods are 
+     * run back to back until the loop is caught up.
+     */
+    public static final int PERIOD_CATCH_UP = 2;
+    
+    /**
+     * The most periods PERIOD_CATCH_UP will try to catch up on. Further behind
+     * than this and the loop is realigned to the current time.
+     */
+    private static final int MAX_CATCH_UP = 3;
+    
+    /**
+     * The number of loops that finished after the start of the next period.
+     */
+    private int overrunCount = 0;
     
+    /**
+     * The number of whole periods that were skipped because of overruns.
+     */
+    private int skippedPeriods = 0;
+    
+    /**
+     * The overrun count the last time it was logged.
+     */
+    private int lastLoggedOverruns = 0;
     
     /**
      * This creates a generic subsystem.
@@ -62,9 +221,9 @@ public abstract class GenericSubsystem extends Thread {
      */
     public GenericSubsystem(String nameOfSubsystem, int threadPriority){
         super(nameOfSubsystem);
-        ds = DriverStation.getInstance();
         this.setPriority(threadPriority);
-        ds = DriverStation.getInstance();
+        ds = DriverStationSnapshot.get();
+        recorder = new FlightRecorder(nameOfSubsystem);
         if(!nameOfSubsystem.equals("LogWriter")){
             log = new Logger(nameOfSubsystem);   
         }
@@ -72,30 +231,515 @@ public abstract class GenericSubsystem extends Thread {
     
     /**
      * This method is in charge of keeping executeAuto and executeTele running.
-     * It must recall the correct method if it crashes.
+     * It must recall the correct method if it crashes. Unless 
+     * {@link #periodPolicy()} says otherwise, each loop starts on an absolute
+     * FPGA deadline so the period does not drift with execute() time.
      */
     public void run(){
-        init();
-        liveWindow();
+        initSubsystem();
+        awaitInit();
+        long period = sleepTime() * 1000L;
+        long nextStart = Clock.get().micros();
         while (true) {
-            try {
-                if(!ds.isTest()){
-                    startTime = Timer.getFPGATimestamp();
-                    execute();
-                    addRunTime(Timer.getFPGATimestamp() - startTime);
-                    if(Timer.getFPGATimestamp() - lastLogTime >= LOG_EVERY){
+            runIteration(periodPolicy() == PERIOD_FIXED_SLEEP ? 0 : nextStart);
+            if(periodPolicy() == PERIOD_FIXED_SLEEP){
+                sleepFor(sleepTime());
+                continue;
+            }
+            nextStart += period;
+            long now = Clock.get().micros();
+            if(now < nextStart){
+                sleepFor((nextStart - now + 999) / 1000);
+            }else{
+                long behind = (now - nextStart) / period;
+                recordOverrun(behind);
+                if(periodPolicy() == PERIOD_SKIP){
+                    nextStart += behind * period;
+                }else if(behind > MAX_CATCH_UP){
+                    nextStart = now;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Sleeps the thread, logging if it is interrupted.
+     * 
+     * @param ms the time in ms to sleep for
+     */
+    private void sleepFor(long ms){
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            if(log != null){
+                log.logError("Sleep interrupted: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Calls {@link #init()} and {@link #liveWindow()}. This is called before 
+     * the first iteration by the {@link SubsystemInitializer}, {@link #run()} 
+     * or the {@link Scheduler} that owns this subsystem. Only the first call 
+     * does anything.
+     */
+    void initSubsystem(){
+        synchronized(initLock){
+            if(initStarted){
+                return;
+            }
+            initStarted = true;
+        }
+        long start = Clock.get().micros();
+        try{
+            init();
+            liveWindow();
+        }catch(Throwable e){
+            if(log != null){
+                log.logError("Uncaught Exception in init: " + e.getMessage());
+            }
+            e.printStackTrace();
+        }
+        synchronized(initLock){
+            initTime = Clock.get().micros() - start;
+            initDone = true;
+            initLock.notifyAll();
+        }
+    }
+    
+    /**
+     * Posts a command to be applied by this subsystem's own thread at the 
+     * start of its next loop, before execute(). Every posting thread gets its
+     * own single producer ring, so posting never locks after the first post.
+     * 
+     * @param command the command id, passed to {@link #handleCommand}
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     * @return false if the command was dropped
+     */
+    protected boolean post(int command, double arg1, double arg2){
+        CommandRing ring = ringFor(Thread.currentThread());
+        if(ring == null || !ring.post(command, arg1, arg2)){
+            if(log != null){
+                log.logError("Dropped command " + command);
+            }
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Posts a command with no arguments.
+     * 
+     * @param command the command id
+     * @return false if the command was dropped
+     */
+    protected boolean post(int command){
+        return post(command, 0, 0);
+    }
+    
+    /**
+     * @param producer a thread posting commands
+     * @return the ring owned by that thread, or null if too many live threads
+     * are posting
+     */
+    private CommandRing ringFor(Thread producer){
+        int count = ringCount;
+        for(int i = 0; i < count; i++){
+            if(commandRings[i].getProducer() == producer){
+                return commandRings[i];
+            }
+        }
+        synchronized(commandRings){
+            for(int i = ringCount; i > count; i--){
+                if(commandRings[i - 1].getProducer() == producer){
+                    return commandRings[i - 1];
+                }
+            }
+            if(ringCount < MAX_PRODUCERS){
+                CommandRing ring = new CommandRing(producer);
+                commandRings[ringCount] = ring;
+                ringCount++;
+                return ring;
+            }
+            //Take over the ring of a thread that has finished, such as an
+            //init thread
+            for(int i = 0; i < ringCount; i++){
+                if(!commandRings[i].getProducer().isAlive() && commandRings[i].isEmpty()){
+                    commandRings[i].setProducer(producer);
+                    return commandRings[i];
+                }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Applies every posted command through {@link #handleCommand}.
+     * 
+     * @return the time in microseconds the oldest command was posted, or 0
+     */
+    private long drainCommands(){
+        long oldest = 0;
+        int count = ringCount;
+        for(int i = 0; i < count; i++){
+            if(commandRings[i].isEmpty()){
+                continue;
+            }
+            //Set before the ring is emptied so hasPendingCommands() never sees
+            //an empty ring and a stale status at the same time
+            applyingCommands = true;
+            long posted = commandRings[i].drain(commandHandler);
+            if(posted != 0 && (oldest == 0 || posted < oldest)){
+                oldest = posted;
+            }
+        }
+        return oldest;
+    }
+    
+    /**
+     * @return if every command ring is empty
+     */
+    private boolean commandRingsEmpty(){
+        int count = ringCount;
+        for(int i = 0; i < count; i++){
+            if(!commandRings[i].isEmpty()){
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Check this before reading {@link #getStatus()} to tell if the status 
+     * already reflects every command posted so far.
+     * 
+     * @return if any posted command has not been applied, or was applied but
+     * its loop has not published a status yet
+     */
+    protected boolean hasPendingCommands(){
+        return !commandRingsEmpty() || applyingCommands;
+    }
+    
+    /**
+     * Publishes a new status. Call once at the end of execute().
+     * 
+     * @param state the state id
+     * @param flags the flag bits
+     * @param measurement1 the first measurement
+     * @param measurement2 the second measurement
+     */
+    protected void publishStatus(int state, int flags, double measurement1, double measurement2){
+        SubsystemStatus next = new SubsystemStatus(status.getSequence() + 1, heartbeatStart, 
+                state, flags, measurement1, measurement2);
+        status = next;
+        synchronized(statusLock){
+            statusLock.notifyAll();
+        }
+    }
+    
+    /**
+     * @return the newest published status
+     */
+    public SubsystemStatus getStatus(){
+        return status;
+    }
+    
+    /**
+     * Waits for a status newer than the given sequence number.
+     * 
+     * @param sequence the sequence number of the last status seen
+     * @param timeoutMs the longest to wait in ms
+     * @return the newest status, which is not newer if the wait timed out
+     */
+    public SubsystemStatus awaitStatus(int sequence, long timeoutMs){
+        long deadline = Clock.get().micros() + timeoutMs * 1000;
+        synchronized(statusLock){
+            while(status.getSequence() == sequence){
+                long left = (deadline - Clock.get().micros()) / 1000;
+                if(left <= 0){
+                    break;
+                }
+                try {
+                    statusLock.wait(left);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        return status;
+    }
+    
+    /**
+     * @return the number of commands dropped because a ring was full
+     */
+    public int getDroppedCommands(){
+        int dropped = 0;
+        int count = ringCount;
+        for(int i = 0; i < count; i++){
+            dropped += commandRings[i].getDropped();
+        }
+        return dropped;
+    }
+    
+    /**
+     * Applies a command posted with {@link #post(int, double, double)}. Called
+     * on this subsystem's own thread. Does nothing by default.
+     * 
+     * @param command the command id
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+    protected void handleCommand(int command, double arg1, double arg2){
+    }
+    
+    /**
+     * Waits until init() and liveWindow() have returned.
+     */
+    void awaitInit(){
+        synchronized(initLock){
+            while(!initDone){
+                try {
+                    initLock.wait();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return the time in microseconds init() and liveWindow() took, or 0 if 
+     * they have not returned yet
+     */
+    public long getInitTime(){
+        synchronized(initLock){
+            return initTime;
+        }
+    }
+    
+    /**
+     * The subsystems whose init() must return before this one's init() is 
+     * called. Subsystems with no dependencies between them are initialized at 
+     * the same time. Override if init() uses another subsystem.
+     * 
+     * @return the subsystems this one depends on
+     */
+    protected GenericSubsystem[] getDependencies(){
+        return new GenericSubsystem[0];
+    }
+    
+    /**
+     * Runs one pass of the subsystem: {@link #execute()}, the timing 
+     * bookkeeping and the periodic {@link #logInfo()}. Every pass is kept by
+     * the {@link FlightRecorder}. Anything thrown is logged and dumps the 
+     * flight recorders, and the next iteration still runs.
+     * 
+     * @param scheduledStart the FPGA time in microseconds this loop was meant
+     * to start at, or 0 if the loop is not on a fixed schedule.
+     */
+    void runIteration(long scheduledStart){
+        boolean ran = false;
+        long oldestCommand = 0;
+        long start = 0;
+        long executeTime = 0;
+        Throwable failure = null;
+        try {
+            ds = DriverStationSnapshot.refresh();
+            checkModeChange();
+            if(!ds.isTest()){
+                start = Clock.get().micros();
+                loopTime = start / 1000000.0;
+                if(scheduledStart != 0){
+                    wakeJitter.record(start - scheduledStart);
+                }
+                if(lastStartTime != 0){
+                    periodTimes.record(start - lastStartTime);
+                }
+                lastStartTime = start;
+                heartbeatStart = start;
+                ran = true;
+                oldestCommand = drainCommands();
+                execute();
+                executeTime = Clock.get().micros() - start;
+                executeTimes.record(executeTime);
+                if(loopTime - lastLogTime >= LOG_EVERY){
+                    //Skip reading the sensors for messages that would be
+                    //filtered anyway
+                    if(log != null && log.isLogged()){
                         logInfo();
-                        lastLogTime = Timer.getFPGATimestamp();
                     }
+                    publishLoopTimes();
+                    logLoopStats();
+                    logOverruns();
+                    lastLogTime = loopTime;
                 }
-                Thread.sleep(sleepTime());
-            } catch (Throwable e) {
+            }
+        } catch (Throwable e) {
+            failure = e;
+            if(log != null){
                 log.logError("Uncaught Exception: " + e.getMessage());
-                e.printStackTrace();
             }
+            e.printStackTrace();
+        }
+        if(ran){
+            applyingCommands = false;
+            outputs.flush();
+            if(oldestCommand != 0){
+                commandLatency.record(Clock.get().micros() - oldestCommand);
+            }
+            if(failure != null && executeTime == 0){
+                executeTime = Clock.get().micros() - start;
+            }
+            SubsystemStatus last = status;
+            recorder.record(start, (int)executeTime, failure != null, last.getState(), last.getFlags(),
+                    last.getMeasurement1(), last.getMeasurement2(), outputs.getValue(0),
+                    outputs.getValue(1), outputs.getValue(2), outputs.getValue(3));
+        }
+        if(failure != null){
+            dumpFlightRecorders(getName() + " threw " + failure);
+        }
+        heartbeatFinish = Clock.get().micros();
+    }
+    
+    /**
+     * Writes every subsystem's last loops to a crash file and logs its name.
+     * Blocks until the file is written.
+     * 
+     * @param reason what went wrong, written at the top of the file
+     */
+    void dumpFlightRecorders(String reason){
+        String file = FlightRecorder.dumpAll(reason);
+        if(file != null && log != null){
+            log.logError("Flight recorder dumped to " + file);
+        }
+    }
+    
+    /**
+     * Use this instead of {@link edu.wpi.first.wpilibj.Timer#getFPGATimestamp()}
+     * inside execute(). Every call in the same loop returns the same value.
+     * 
+     * @return the time in seconds, captured once at the start of this loop
+     */
+    protected double now(){
+        return loopTime;
+    }
+    
+    /**
+     * @return the current time in nanoseconds, read every call. For profiling.
+     */
+    protected long nanoTime(){
+        return Clock.get().nanos();
+    }
+    
+    /**
+     * @return the FPGA time in microseconds the last execute() started
+     */
+    long getHeartbeatStart(){
+        return heartbeatStart;
+    }
+    
+    /**
+     * @return the FPGA time in microseconds the last loop finished, or 0 if
+     * no loop has finished yet
+     */
+    long getHeartbeatFinish(){
+        return heartbeatFinish;
+    }
+    
+    /**
+     * Dumps and resets the loop histograms when the robot changes mode, so 
+     * each mode (and the end of the match) gets its own numbers.
+     */
+    private void checkModeChange(){
+        int mode;
+        if(ds.isEnabled() && ds.isAutonomous()){
+            mode = MODE_AUTO;
+        }else if(ds.isEnabled() && ds.isOperatorControl()){
+            mode = MODE_TELEOP;
+        }else{
+            mode = MODE_DISABLED;
+        }
+        if(mode != lastMode){
+            if(lastMode != -1){
+                publishLoopTimes();
+                logLoopStats();
+            }
+            executeTimes.reset();
+            wakeJitter.reset();
+            periodTimes.reset();
+            commandLatency.reset();
+            outputs.invalidate();
+            lastStartTime = 0;
+            lastMode = mode;
         }
     }
     
+    /**
+     * Copies the p99 execute() time out of the histogram for
+     * {@link #getExecuteP99()}. Own thread only.
+     */
+    private void publishLoopTimes(){
+        if(executeTimes.getCount() > 0){
+            executeP99 = executeTimes.getPercentile(99);
+        }
+    }
+    
+    /**
+     * Logs the loop histograms.
+     */
+    protected void logLoopStats(){
+        if(log != null && executeTimes.getCount() > 0){
+            log.logMessage("Execute p50/p90/p99/max: " + executeTimes.summary());
+            log.logMessage("Wake jitter p50/p90/p99/max: " + wakeJitter.summary());
+            log.logMessage("Period p50/p90/p99/max: " + periodTimes.summary());
+            if(commandLatency.getCount() > 0){
+                log.logMessage("Command latency p50/p90/p99/max: " + commandLatency.summary() + 
+                        " Dropped: " + getDroppedCommands());
+            }
+            if(outputs.getWrites() > 0){
+                log.logMessage("Output writes: " + outputs.getWrites() + " Suppressed: " + outputs.getSuppressed());
+            }
+        }
+    }
+    
+    /**
+     * Records that a loop finished after the start of the next period.
+     * 
+     * @param skipped the number of whole periods that were missed
+     */
+    void recordOverrun(long skipped){
+        overrunCount++;
+        skippedPeriods += skipped;
+    }
+    
+    /**
+     * Logs the overrun counts if there have been new overruns.
+     */
+    private void logOverruns(){
+        if(log != null && overrunCount != lastLoggedOverruns){
+            log.logMessage("Overran " + (overrunCount - lastLoggedOverruns) + 
+                    " periods (" + overrunCount + " total, " + skippedPeriods + " skipped)");
+            lastLoggedOverruns = overrunCount;
+        }
+    }
+    
+    /**
+     * @return the number of loops that finished after the start of the next 
+     * period.
+     */
+    public int getOverrunCount(){
+        return overrunCount;
+    }
+    
+    /**
+     * @return the number of whole periods that were skipped because of 
+     * overruns.
+     */
+    public int getSkippedPeriods(){
+        return skippedPeriods;
+    }
+    
     /**
      * This method gets called once when the robot is powered on.  The purpose 
      * of this method is to init things that take longer than should be allowed 
@@ -107,8 +751,8 @@ public abstract class GenericSubsystem extends Thread {
      * This method is executed repeatedly while the robot is on.  The intent for
      * this method is to be auto restarted when things crash.  The implementer 
      * is in charge of making sure to follow the mode rules!  To get the current
-     * mode use {@link DriverStation#isEnabled() isEnabled()} or 
-     * {@link DriverStation#isAutonomous() isAutonomous()}
+     * mode use {@link DriverStationSnapshot#isEnabled() ds.isEnabled()} or 
+     * {@link DriverStationSnapshot#isAutonomous() ds.isAutonomous()}
      * 
      * @throws Exception
      */
@@ -126,32 +770,62 @@ public abstract class GenericSubsystem extends Thread {
     public  abstract void liveWindow();
     
     /**
-     * Add the runTime to the ring buffer and increment the ring buffer.
-     * @param runTime - The last runtime in seconds.
-     */ 
-    protected void addRunTime(double runTime){
-        ringBuffer[ringLoc] = runTime;
-        ringLoc ++;
-        ringLoc %= RING_LENGTH;
+     * @return the histogram of execute() times in microseconds. Only safe to
+     * read on this subsystem's own thread.
+     */
+    public LatencyHistogram getExecuteTimes(){
+        return executeTimes;
     }
     
     /**
-     * Returns the average runtime of all of the runtimes in the ring buffer.
-     * @return - the average runtime off all of the runtimes in the ring buffer.
-     */ 
-    protected double getAverageRuntime(){
-        double total = 0.0;
-        for(int i = 0; i < RING_LENGTH; i++){
-            total += ringBuffer[i];
-        }
-        return total/RING_LENGTH;
-    }    
+     * Safe to read from any thread. Updated every LOG_EVERY seconds.
+     * 
+     * @return the p99 execute() time in microseconds, or 0 before the first
+     * update
+     */
+    public long getExecuteP99(){
+        return executeP99;
+    }
+    
+    /**
+     * @return the histogram of wake up jitter in microseconds.
+     */
+    public LatencyHistogram getWakeJitter(){
+        return wakeJitter;
+    }
+    
+    /**
+     * @return the histogram of loop periods in microseconds.
+     */
+    public LatencyHistogram getPeriodTimes(){
+        return periodTimes;
+    }
     
     /**
-     * @return The time in ms to sleep for after each loop
+     * @return The time in ms to sleep for after each loop. This is also the 
+     * default period when the subsystem is run by a {@link Scheduler}.
      */ 
     public abstract int sleepTime();
     
+    /**
+     * Puts every actuator the subsystem owns into a safe state. Called by the
+     * {@link Watchdog} from its own thread when execute() has stalled, so it
+     * must not block or log. Does nothing by default.
+     */
+    protected void safeOutput(){
+    }
+    
+    /**
+     * Override to change how the loop keeps its period when run by 
+     * {@link #run()}.
+     * 
+     * @return {@link #PERIOD_FIXED_SLEEP}, {@link #PERIOD_SKIP} or 
+     * {@link #PERIOD_CATCH_UP}. Defaults to PERIOD_SKIP.
+     */
+    protected int periodPolicy(){
+        return PERIOD_SKIP;
+    }
+    
     /**
      * Log all info about the subsystem.
      */ 
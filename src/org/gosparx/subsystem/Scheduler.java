@@ -0,0 +1,186 @@
+package org.gosparx.subsystem;
+
+import org.gosparx.util.Clock;
+import org.gosparx.util.DriverStationSnapshot;
+import org.gosparx.util.Logger;
+
+/**
+ * Runs several subsystems from a single thread instead of giving each one its
+ * own {@link Thread}. Every registered subsystem has a period and a priority,
+ * and the scheduler calls its {@link GenericSubsystem#execute() execute()} at
+ * fixed release times. When more than one subsystem is due at the same time
+ * the one with the highest priority runs first. If no priority is given the
+ * subsystem is ordered rate monotonic (the shorter the period, the higher the
+ * priority). Release times are absolute, so a late subsystem skips the
+ * periods it missed and stays in phase instead of drifting. A new
+ * {@link DriverStationSnapshot} is captured before every subsystem runs.
+ *
+ * Subsystems whose execute() blocks (LogWriter waits on its queue, Autonomous
+ * sleeps in WAIT) must not be registered here, as they would stall every other
+ * subsystem on the scheduler.
+ */
+public class Scheduler extends Thread {
+
+    /**
+     * The most subsystems that can be registered with one scheduler.
+     */
+    private static final int MAX_TASKS = 10;
+
+    /**
+     * The time in microseconds between the first release of each registered
+     * subsystem. Spreads the subsystems out so they are not all due at once.
+     */
+    private static final long OFFSET_STEP = 2000;
+
+    /**
+     * The registered subsystems, in registration order.
+     */
+    private GenericSubsystem[] tasks = new GenericSubsystem[MAX_TASKS];
+
+    /**
+     * The period in microseconds of each registered subsystem.
+     */
+    private long[] periods = new long[MAX_TASKS];
+
+    /**
+     * The priority of each registered subsystem. Higher runs first.
+     */
+    private int[] priorities = new int[MAX_TASKS];
+
+    /**
+     * The FPGA time in microseconds at which each subsystem is next due.
+     */
+    private long[] nextRelease = new long[MAX_TASKS];
+
+    /**
+     * The number of registered subsystems.
+     */
+    private int taskCount = 0;
+
+    /**
+     * Used for logging registration problems.
+     */
+    private Logger log;
+
+    /**
+     * Creates a new Scheduler.
+     *
+     * @param name the name of the scheduler thread
+     * @param threadPriority the {@link java.lang.Thread}'s priority
+     */
+    public Scheduler(String name, int threadPriority){
+        super(name);
+        setPriority(threadPriority);
+        log = new Logger(Logger.SUB_SCHEDULER);
+    }
+
+    /**
+     * Registers a subsystem using its {@link GenericSubsystem#sleepTime()
+     * sleepTime()} as the period and a rate monotonic priority.
+     *
+     * @param subsystem the subsystem to run
+     * @return if the subsystem was registered
+     */
+    public boolean register(GenericSubsystem subsystem){
+        return register(subsystem, subsystem.sleepTime());
+    }
+
+    /**
+     * Registers a subsystem with a rate monotonic priority.
+     *
+     * @param subsystem the subsystem to run
+     * @param periodMs the time in ms between the start of each execute()
+     * @return if the subsystem was registered
+     */
+    public boolean register(GenericSubsystem subsystem, int periodMs){
+        return register(subsystem, periodMs, 1000 / Math.max(periodMs, 1));
+    }
+
+    /**
+     * Registers a subsystem with the scheduler. Must be called before
+     * {@link #start()}.
+     *
+     * @param subsystem the subsystem to run
+     * @param periodMs the time in ms between the start of each execute()
+     * @param priority the priority of the subsystem. Higher runs first.
+     * @return if the subsystem was registered
+     */
+    public synchronized boolean register(GenericSubsystem subsystem, int periodMs, int priority){
+        if(isAlive()){
+            log.logError("Can not register " + subsystem.getName() + " after the scheduler started");
+            return false;
+        }
+        if(taskCount >= MAX_TASKS){
+            log.logError("Too many subsystems, could not register " + subsystem.getName());
+            return false;
+        }
+        tasks[taskCount] = subsystem;
+        periods[taskCount] = Math.max(periodMs, 1) * 1000L;
+        priorities[taskCount] = priority;
+        taskCount++;
+        return true;
+    }
+
+    /**
+     * Initializes every registered subsystem and then runs them forever.
+     */
+    public void run(){
+        int count;
+        synchronized(this){
+            count = taskCount;
+        }
+        for(int i = 0; i < count; i++){
+            tasks[i].initSubsystem();
+        }
+        long start = Clock.get().micros();
+        for(int i = 0; i < count; i++){
+            nextRelease[i] = start + ((i * OFFSET_STEP) % periods[i]);
+        }
+        while(true){
+            long now = Clock.get().micros();
+            int next = -1;
+            long earliest = Long.MAX_VALUE;
+            for(int i = 0; i < count; i++){
+                if(nextRelease[i] <= now){
+                    if(next == -1 || priorities[i] > priorities[next] ||
+                            (priorities[i] == priorities[next] && nextRelease[i] < nextRelease[next])){
+                        next = i;
+                    }
+                }else if(nextRelease[i] < earliest){
+                    earliest = nextRelease[i];
+                }
+            }
+            if(next == -1){
+                sleepUntil(earliest, now);
+                continue;
+            }
+            DriverStationSnapshot.capture();
+            tasks[next].runIteration(nextRelease[next]);
+            nextRelease[next] += periods[next];
+            now = Clock.get().micros();
+            if(nextRelease[next] <= now){
+                long behind = (now - nextRelease[next]) / periods[next];
+                tasks[next].recordOverrun(behind);
+                nextRelease[next] += behind * periods[next];
+            }
+        }
+    }
+
+    /**
+     * Sleeps until the given FPGA time.
+     *
+     * @param wakeTime the FPGA time in microseconds to wake up at
+     * @param now the current FPGA time in microseconds
+     */
+    private void sleepUntil(long wakeTime, long now){
+        long sleepMs = (wakeTime - now + 999) / 1000;
+        if(sleepMs < 1){
+            sleepMs = 1;
+        }
+        try {
+            Thread.sleep(sleepMs);
+        } catch (InterruptedException e) {
+            log.logError("Scheduler sleep interrupted: " + e.getMessage());
+        }
+    }
+}
@@ -5,12 +5,19 @@ import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj.Jaguar;
 import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj.Talon;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.Victor;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
 import org.gosparx.IO;
+import org.gosparx.output.CachedSolenoid;
+import org.gosparx.output.CachedTalon;
 import org.gosparx.sensors.PotentiometerData;
+import org.gosparx.sensors.SensorFrame;
+import org.gosparx.sensors.SensorSampler;
+import org.gosparx.util.Clock;
+import org.gosparx.util.DriverStationSnapshot;
 import org.gosparx.util.Logger;
+import org.gosparx.util.PersistentStore;
+import org.gosparx.util.Telemetry;
 
 /**
  * @author Alex
@@ -29,6 +36,23 @@ public class Shooter extends GenericSubsystem{
      */
     private static final double INCHES_PER_VOLT = -12.566370614359172953850573533118;//2 inch wheel
     
+    /**
+     * The {@link PersistentStore} key of the pot's zero point in volts, saved
+     * when the winch finds home somewhere new.
+     */
+    private static final String POT_ZERO_KEY = "shooter.potZero";
+    
+    /**
+     * How far in volts home has to move from the saved zero before it is
+     * saved again, so pot noise does not write to flash every shot.
+     */
+    private static final double POT_ZERO_TOLERANCE = 0.02;
+    
+    /**
+     * The zero point last saved to the {@link PersistentStore}.
+     */
+    private double savedPotZero;
+    
     /**
      * The # of inches to wind and unwind the cable when shooting.
      */
@@ -75,6 +99,26 @@ public class Shooter extends GenericSubsystem{
      */
     private static final double LATCH_TIME = 0.75;
     
+    /**
+     * The commands other subsystems post to the shooter.
+     */
+    private static final int CMD_SET_MODE           = 0;
+    private static final int CMD_ADJUST_SLACK       = 1;
+    private static final int CMD_SHOOT              = 2;
+    
+    /**
+     * The flags in the shooter {@link SubsystemStatus}. Its state is the 
+     * shooter state, measurement 1 is the pot distance in inches and 
+     * measurement 2 is the winch speed.
+     */
+    public static final int STATUS_LATCH_CLOSED     = 1;
+    
+    /**
+     * The number of shots the shooter thread has accepted, so callers can
+     * tell a shot was fired and not only asked for.
+     */
+    private volatile int shotCount = 0;
+    
     /**
      * The Potentiometer for the winch. 
      */
@@ -83,12 +127,12 @@ public class Shooter extends GenericSubsystem{
     /**
      * The motor controller for the right side of the winch.
      */
-    private Talon rightWinchMotor;
+    private CachedTalon rightWinchMotor;
 
     /**
      * The motor controller for the left side of the winch
      */
-    private Talon leftWinchMotor;
+    private CachedTalon leftWinchMotor;
     
     /**
      * The limit switch for the winch latch.
@@ -103,7 +147,7 @@ public class Shooter extends GenericSubsystem{
     /**
      * The Solenoid of latch.
      */ 
-    private Solenoid latch;
+    private CachedSolenoid latch;
 
     /**
      * The speed that the winch is set at the end of the execute() loop.
@@ -120,6 +164,13 @@ public class Shooter extends GenericSubsystem{
      * The shooter used for the singleton model.
      */
     private static Shooter shooter;
+
+    /**
+     * Log templates for the shot and logInfo().
+     */
+    private static final int LOG_SHOT = Logger.template("lastShotWound: {b} potInches: {}");
+    private static final int LOG_POT = Logger.template("Pot Dist: {} Pot Voltage: {}");
+    private static final int LOG_WINCH = Logger.template("Wanted Winch Speed: {}");
         
     /**
      * The PotentiometerData for the pot that is on the winch.
@@ -157,6 +208,30 @@ public class Shooter extends GenericSubsystem{
     
     private double potInches = 0;
     
+    /**
+     * The newest sensor readings from the {@link SensorSampler}.
+     */
+    private SensorFrame sensorFrame = new SensorFrame();
+    
+    /**
+     * The {@link Clock} time in microseconds the sensors were registered. 
+     * Sensor frames older than this are ignored.
+     */
+    private long sensorsRegistered = 0;
+    
+    /**
+     * Records the winch loop every loop while enabled, for tuning.
+     */
+    private Telemetry telemetry;
+    
+    /**
+     * The telemetry channels.
+     */
+    private int telPotInches;
+    private int telWinchSpeed;
+    private int telState;
+    private int telLatchClosed;
+    
     /**
      * Returns an instance of a shooter. Used in the singleton model.
      */
@@ -178,36 +253,55 @@ public class Shooter extends GenericSubsystem{
      * Initializes everything.
      */ 
     public void init() {
-        rightWinchMotor = new Talon(IO.DEFAULT_SLOT, IO.PWM_RIGHT_WINCH);
+        rightWinchMotor = outputs.add(new Talon(IO.DEFAULT_SLOT, IO.PWM_RIGHT_WINCH));
         latchSwitch = new DigitalInput(IO.DEFAULT_SLOT, IO.LATCH_LIMIT_SWITCH_CHAN);
-        latch = new Solenoid(IO.DEFAULT_SLOT, IO.LATCH_CHAN);
+        latch = outputs.add(new Solenoid(IO.DEFAULT_SLOT, IO.LATCH_CHAN));
         latch.set(LATCH_ENGAGED);
         shooterState = State.STANDBY;
         winchPot = new AnalogPotentiometer(IO.WINCH_POT_CHAN);
         potData = new PotentiometerData(winchPot, INCHES_PER_VOLT);
-        leftWinchMotor = new Talon(IO.DEFAULT_SLOT, IO.PWM_LEFT_WINCH);
+        leftWinchMotor = outputs.add(new Talon(IO.DEFAULT_SLOT, IO.PWM_LEFT_WINCH));
         if(!latchSwitch.get()){
             potData.reset();
+        }else{
+            //Not home, the zero found the last time it was is better than
+            //wherever the winch is now
+            potData.setZero(PersistentStore.getInstance().getDouble(POT_ZERO_KEY, potData.getZero()));
         }
+        savedPotZero = PersistentStore.getInstance().getDouble(POT_ZERO_KEY, Double.NaN);
+        SensorSampler.getInstance().registerPot(SensorSampler.WINCH_POT_VOLTS, winchPot);
+        SensorSampler.getInstance().registerDigital(SensorSampler.LATCH_SWITCH, latchSwitch);
+        sensorsRegistered = Clock.get().micros();
+        telemetry = new Telemetry(Logger.SUB_SHOOTER);
+        telPotInches = telemetry.addDouble("potInches");
+        telWinchSpeed = telemetry.addDouble("winchSpeed");
+        telState = telemetry.addInt("state");
+        telLatchClosed = telemetry.addBoolean("latchClosed");
     }
 
     /**
      * Loops. 
      */ 
     public void execute() throws Exception {
-        potInches = potData.getInches();
+        SensorSampler.getInstance().read(sensorFrame);
+        if(sensorFrame.getTimestamp() > sensorsRegistered){
+            potInches = potData.getInches(sensorFrame.getDouble(SensorSampler.WINCH_POT_VOLTS));
+            limitSwitchValue = !sensorFrame.getBoolean(SensorSampler.LATCH_SWITCH);
+        }else{
+            potInches = potData.getInches();
+            limitSwitchValue = !latchSwitch.get();
+        }
         wantedWinchSpeed = 0;
-        limitSwitchValue = !latchSwitch.get();
         switch(shooterState){
             // Disengauges the latch and then sets the lastShotTime to the 
             // current FPGA time. Then sets the State to SHOOTER_COOLDOWN
             case State.SHOOT:
                 log.logMessage("Shooting");
                 latch.set(LATCH_DISENGAGED);
-                lastShotTime = Timer.getFPGATimestamp();
+                lastShotTime = now();
                 shooterState = State.SHOOTER_COOLDOWN;
                 lastShotWound = potInches < MAX_UNWIND_INCHES/2;
-                log.logMessage("lastShotWound: " + lastShotWound + " potInches: " + potInches);
+                log.logMessage(LOG_SHOT, lastShotWound ? 1 : 0, potInches);
                 break;
             // Does nothing
             case State.STANDBY:
@@ -217,14 +311,14 @@ public class Shooter extends GenericSubsystem{
             // Does nothing for TIME_BETWEEN_SHOTS seconds after the last shot.
             // Then starts retracting the winch.
             case State.SHOOTER_COOLDOWN:
-                if (Timer.getFPGATimestamp() - lastShotTime >= TIME_TO_TAKE_PICTURE && !gotLastShot) {
+                if (now() - lastShotTime >= TIME_TO_TAKE_PICTURE && !gotLastShot) {
                     Vision.getInstance().setSaveImage();
                     log.logMessage("Saved Image");
                     gotLastShot = true;
-                } else if (Timer.getFPGATimestamp() - lastShotTime <= TIME_TO_TAKE_PICTURE) {
+                } else if (now() - lastShotTime <= TIME_TO_TAKE_PICTURE) {
                     gotLastShot = false;
                 }
-                if (Timer.getFPGATimestamp() - lastShotTime >= TIME_BETWEEN_SHOTS) {
+                if (now() - lastShotTime >= TIME_BETWEEN_SHOTS) {
                     log.logMessage("Shooter Cooldown Complete");
                     if (limitSwitchValue || lastShotWound) {
                         log.logMessage("Not auto winding because of limitSwitch:" + limitSwitchValue
@@ -243,14 +337,15 @@ public class Shooter extends GenericSubsystem{
                     log.logMessage("latch has been triggered");
                     shooterState = State.HOLD_WINCH;
                     potData.reset();
-                    lastUnwindTime = Timer.getFPGATimestamp();
+                    savePotZero();
+                    lastUnwindTime = now();
                 }
                 break;
             case State.HOLD_WINCH:
                 latch.set(LATCH_ENGAGED);
                 wantedWinchSpeed = WINCH_SPEED;
-                if(Timer.getFPGATimestamp() - lastUnwindTime >= LATCH_TIME){
-                    lastUnwindTime = Timer.getFPGATimestamp();
+                if(now() - lastUnwindTime >= LATCH_TIME){
+                    lastUnwindTime = now();
                     log.logMessage("Unwinding Winch");
                     wantedWinchSpeed = 0;
                     shooterState = State.UNWINDING;
@@ -258,7 +353,7 @@ public class Shooter extends GenericSubsystem{
                 break;
             case State.UNWINDING:
                 wantedWinchSpeed = -WINCH_SPEED;
-                if((Timer.getFPGATimestamp() - lastUnwindTime >= UNWIND_TIMEOUT) || potInches >= MAX_UNWIND_INCHES){
+                if((now() - lastUnwindTime >= UNWIND_TIMEOUT) || potInches >= MAX_UNWIND_INCHES){
                     log.logMessage("Unwinding complete");
                     wantedWinchSpeed = 0;
                     shooterState = State.STANDBY;
@@ -286,6 +381,16 @@ public class Shooter extends GenericSubsystem{
         }
         rightWinchMotor.set(wantedWinchSpeed);
         leftWinchMotor.set(-wantedWinchSpeed);
+        publishStatus(shooterState, limitSwitchValue ? STATUS_LATCH_CLOSED : 0, potInches, wantedWinchSpeed);
+        if(ds.isEnabled()){
+            telemetry.set(telPotInches, potInches);
+            telemetry.set(telWinchSpeed, wantedWinchSpeed);
+            telemetry.set(telState, shooterState);
+            telemetry.set(telLatchClosed, limitSwitchValue);
+            telemetry.sample();
+        }else{
+            telemetry.endBlock();
+        }
     }
     
     /**
@@ -293,57 +398,126 @@ public class Shooter extends GenericSubsystem{
      * @param wantedState - the desired state.
      */
     public void setMode(int wantedState){
-        shooterState = wantedState;
-        log.logMessage("NEW STATE HAS BEEN SET TO: " + State.getState(wantedState));
+        post(CMD_SET_MODE, wantedState, 0);
     }
     
     public void setAdjustSlack(double inchesUnwound){
-        log.logMessage("Slack adjusted to: " + inchesUnwound);
-        this.inchesUnwound = inchesUnwound;
-        if(inchesUnwound < potInches){
-            shooterState = State.SHOOTER_WINDING;
-        }else{
-            shooterState = State.SHOOTER_UNWINDING;
-        }
+        post(CMD_ADJUST_SLACK, inchesUnwound, 0);
     }
     
     /**
      * Sets the state of the Shooter to State.Shoot if the current state of the robot is standby.
-     * @return if the shooter attempted to shoot
+     * The shooter checks again when it applies the command and may still
+     * refuse, so use {@link #getShotCount()} to tell if the shot was fired.
+     * @return if a shot was asked for
      */ 
     public boolean shoot(){
-       if(shooterState == State.STANDBY && (Acquisitions.getInstance().readyToShoot() || ds.isOperatorControl())){
-           shooterState = State.SHOOT;
-           log.logMessage("Shooting");
-           return true;
+       if(hasPendingCommands()){
+           //The status does not show the last command yet
+           return false;
+       }
+       if(canShoot(getStatus().getState())){
+           return post(CMD_SHOOT);
        }
        log.logMessage("Attempted to shoot, but could not");
        return false;
     }
     
+    /**
+     * @return the number of shots the shooter has fired. Goes up when the
+     * shooter leaves standby to shoot.
+     */
+    public int getShotCount(){
+        return shotCount;
+    }
+    
+    /**
+     * @param state - the shooter state to check
+     * @return if the state is standby and acquisitions is ready, or it is 
+     * teleop
+     */
+    private boolean canShoot(int state){
+        return state == State.STANDBY && 
+                (Acquisitions.getInstance().readyToShoot() || DriverStationSnapshot.get().isOperatorControl());
+    }
+    
+    /**
+     * Applies the commands posted by the public methods above, on the shooter
+     * thread before execute().
+     */
+    protected void handleCommand(int command, double arg1, double arg2){
+        switch(command){
+            case CMD_SET_MODE:
+                shooterState = (int)arg1;
+                log.logMessage("NEW STATE HAS BEEN SET TO: " + State.getState(shooterState));
+                break;
+            case CMD_ADJUST_SLACK:
+                log.logMessage("Slack adjusted to: " + arg1);
+                inchesUnwound = arg1;
+                if(inchesUnwound < potInches){
+                    shooterState = State.SHOOTER_WINDING;
+                }else{
+                    shooterState = State.SHOOTER_UNWINDING;
+                }
+                break;
+            case CMD_SHOOT:
+                if(canShoot(shooterState)){
+                    shooterState = State.SHOOT;
+                    shotCount++;
+                    log.logMessage("Shooting");
+                }else{
+                    log.logMessage("Attempted to shoot, but could not");
+                }
+                break;
+            default:
+                log.logError("Unknown command for shooter: " + command);
+                break;
+        }
+    }
+    
+    /**
+     * Saves the pot's zero point if it moved past POT_ZERO_TOLERANCE. The
+     * LogWriter thread writes it, so the winch loop never waits on flash.
+     */
+    private void savePotZero(){
+        double zero = potData.getZero();
+        if(Double.isNaN(savedPotZero) || Math.abs(zero - savedPotZero) > POT_ZERO_TOLERANCE){
+            PersistentStore.getInstance().putDoubleLater(POT_ZERO_KEY, zero);
+            savedPotZero = zero;
+        }
+    }
+    
     /**
      * Initializes and adds all of the components to the livewindow.
      */ 
     public void liveWindow() {
-        LiveWindow.addActuator(subsystemName, "Right Winch", rightWinchMotor);
+        LiveWindow.addActuator(subsystemName, "Right Winch", rightWinchMotor.getTalon());
         LiveWindow.addSensor(subsystemName, "Winch Pot", winchPot);
-        LiveWindow.addActuator(subsystemName, "Left Winch", leftWinchMotor);
-        LiveWindow.addActuator(subsystemName, "Fire", latch);
+        LiveWindow.addActuator(subsystemName, "Left Winch", leftWinchMotor.getTalon());
+        LiveWindow.addActuator(subsystemName, "Fire", latch.getSolenoid());
         LiveWindow.addSensor(subsystemName, "Winch Stop Limit", latchSwitch);
     }
 
     public int sleepTime() {
         return 20;
     }
+    
+    /**
+     * Stops both winch motors.
+     */
+    protected void safeOutput(){
+        rightWinchMotor.setNow(0);
+        leftWinchMotor.setNow(0);
+    }
 
     public void logInfo() {
         log.logMessage("Current State: " + State.getState(shooterState));
-        log.logMessage("Pot Dist: " + potData.getInches() + " Pot Voltage: " + winchPot.get());
-        log.logMessage("Wanted Winch Speed: " + wantedWinchSpeed);
+        log.logMessage(LOG_POT, potData.getInches(), winchPot.get());
+        log.logMessage(LOG_WINCH, wantedWinchSpeed);
     }
     
     public boolean isLastCommandDone(){
-            return shooterState == State.STANDBY;
+            return !hasPendingCommands() && getStatus().getState() == State.STANDBY;
     }
     
     /**
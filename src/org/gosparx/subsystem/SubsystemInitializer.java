@@ -0,0 +1,156 @@
+package org.gosparx.subsystem;
+
+import org.gosparx.util.Clock;
+import org.gosparx.util.Logger;
+
+/**
+ * Initializes a set of subsystems before any of them are started. Every
+ * subsystem gets its own thread which waits for the subsystems it
+ * {@link GenericSubsystem#getDependencies() depends on} and then calls its
+ * init(), so subsystems that do not depend on each other are initialized at
+ * the same time. {@link #initAll(GenericSubsystem[])} returns once every
+ * init() has returned, and logs how long each one took.
+ *
+ * If a dependency is not in the set or the dependencies form a cycle, the
+ * subsystems are initialized one at a time in the order given instead.
+ */
+public class SubsystemInitializer {
+
+    /**
+     * Used for logging init times.
+     */
+    private final Logger log;
+
+    /**
+     * Creates a new SubsystemInitializer.
+     */
+    public SubsystemInitializer(){
+        log = new Logger(Logger.SUB_INIT);
+    }
+
+    /**
+     * Initializes every subsystem and waits for all of them to finish.
+     *
+     * @param subsystems the subsystems to initialize
+     */
+    public void initAll(GenericSubsystem[] subsystems){
+        long start = Clock.get().micros();
+        if(isValid(subsystems)){
+            Thread[] threads = new Thread[subsystems.length];
+            for(int i = 0; i < subsystems.length; i++){
+                threads[i] = new InitThread(subsystems[i]);
+                threads[i].start();
+            }
+            for(int i = 0; i < threads.length; i++){
+                try {
+                    threads[i].join();
+                } catch (InterruptedException e) {
+                    log.logError("Interrupted waiting for " + subsystems[i].getName() + " to init");
+                }
+            }
+        }else{
+            for(int i = 0; i < subsystems.length; i++){
+                subsystems[i].initSubsystem();
+            }
+        }
+        long total = Clock.get().micros() - start;
+        long sum = 0;
+        for(int i = 0; i < subsystems.length; i++){
+            long time = subsystems[i].getInitTime();
+            sum += time;
+            log.logMessage(subsystems[i].getName() + " init: " + time / 1000 + " ms");
+        }
+        log.logMessage("All init: " + total / 1000 + " ms (" + sum / 1000 + " ms if run one at a time)");
+    }
+
+    /**
+     * Checks that every dependency is in the set and that there are no
+     * cycles.
+     *
+     * @param subsystems the subsystems to check
+     * @return if the subsystems can be initialized in parallel
+     */
+    private boolean isValid(GenericSubsystem[] subsystems){
+        //0 = not visited, 1 = on the current path, 2 = done
+        int[] marks = new int[subsystems.length];
+        for(int i = 0; i < subsystems.length; i++){
+            if(!visit(subsystems, i, marks)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Depth first search from one subsystem.
+     *
+     * @param subsystems the subsystems
+     * @param i the subsystem to visit
+     * @param marks the visit state of each subsystem
+     * @return false if a dependency is missing or a cycle was found
+     */
+    private boolean visit(GenericSubsystem[] subsystems, int i, int[] marks){
+        if(marks[i] == 2){
+            return true;
+        }
+        if(marks[i] == 1){
+            log.logError("Dependency cycle at " + subsystems[i].getName() + ", initializing in order");
+            return false;
+        }
+        marks[i] = 1;
+        GenericSubsystem[] dependencies = subsystems[i].getDependencies();
+        for(int d = 0; d < dependencies.length; d++){
+            int index = indexOf(subsystems, dependencies[d]);
+            if(index == -1){
+                log.logError(subsystems[i].getName() + " depends on a subsystem that is not started, initializing in order");
+                return false;
+            }
+            if(!visit(subsystems, index, marks)){
+                return false;
+            }
+        }
+        marks[i] = 2;
+        return true;
+    }
+
+    /**
+     * @param subsystems the subsystems to search
+     * @param subsystem the subsystem to find
+     * @return the index of subsystem, or -1
+     */
+    private static int indexOf(GenericSubsystem[] subsystems, GenericSubsystem subsystem){
+        for(int i = 0; i < subsystems.length; i++){
+            if(subsystems[i] == subsystem){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Waits for a subsystem's dependencies and then initializes it.
+     */
+    private static class InitThread extends Thread {
+
+        /**
+         * The subsystem to initialize.
+         */
+        private final GenericSubsystem subsystem;
+
+        /**
+         * @param subsystem the subsystem to initialize
+         */
+        InitThread(GenericSubsystem subsystem){
+            super("Init " + subsystem.getName());
+            this.subsystem = subsystem;
+        }
+
+        public void run(){
+            GenericSubsystem[] dependencies = subsystem.getDependencies();
+            for(int i = 0; i < dependencies.length; i++){
+                dependencies[i].awaitInit();
+            }
+            subsystem.initSubsystem();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.gosparx.subsystem;
+
+/**
+ * An immutable record of a subsystem's state, published at the end of every
+ * execute(). Other threads get the newest one with
+ * {@link GenericSubsystem#getStatus()}, a single volatile read, and can never
+ * see half of one loop and half of the next. What the state, flags and two
+ * measurements mean is documented by each subsystem.
+ */
+public final class SubsystemStatus {
+
+    /**
+     * The status of a subsystem that has not finished a loop yet.
+     */
+    static final SubsystemStatus NONE = new SubsystemStatus(0, 0, -1, 0, 0, 0);
+
+    /**
+     * Counts up by one for every status a subsystem publishes.
+     */
+    private final int sequence;
+
+    /**
+     * The {@link org.gosparx.util.Clock} time in microseconds of the loop
+     * that published this status.
+     */
+    private final long timestamp;
+
+    private final int state;
+    private final int flags;
+    private final double measurement1;
+    private final double measurement2;
+
+    SubsystemStatus(int sequence, long timestamp, int state, int flags,
+            double measurement1, double measurement2){
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.state = state;
+        this.flags = flags;
+        this.measurement1 = measurement1;
+        this.measurement2 = measurement2;
+    }
+
+    /**
+     * @return counts up by one for every status published, 0 before the
+     * first
+     */
+    public int getSequence(){
+        return sequence;
+    }
+
+    /**
+     * @return the time in microseconds of the loop that published this status
+     */
+    public long getTimestamp(){
+        return timestamp;
+    }
+
+    /**
+     * @return the subsystem's state id
+     */
+    public int getState(){
+        return state;
+    }
+
+    /**
+     * @return all of the flag bits
+     */
+    public int getFlags(){
+        return flags;
+    }
+
+    /**
+     * @param flag - the bit to check
+     * @return if the flag is set
+     */
+    public boolean isSet(int flag){
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * @return the first measurement
+     */
+    public double getMeasurement1(){
+        return measurement1;
+    }
+
+    /**
+     * @return the second measurement
+     */
+    public double getMeasurement2(){
+        return measurement2;
+    }
+}
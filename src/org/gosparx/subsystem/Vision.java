@@ -2,15 +2,14 @@ package org.gosparx.subsystem;
 
 import com.sun.squawk.util.MathUtils;
 import edu.wpi.first.wpilibj.Solenoid;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.camera.AxisCamera;
 import edu.wpi.first.wpilibj.image.*;
 import edu.wpi.first.wpilibj.image.NIVision.MeasurementType;
 import org.gosparx.IO;
-import org.gosparx.util.LogWriter;
+import org.gosparx.util.Clock;
+import org.gosparx.util.ImageWriter;
 
 public class Vision extends GenericSubsystem {
-    private LogWriter logWriter;
 
     private int imageLocation;//middle is 180, left is 0, right is 360
     private double imageDistance;//distance from target
@@ -62,12 +61,32 @@ public class Vision extends GenericSubsystem {
     private double pixelsToInches = 0;
     private static final int CENTER_OF_CAMERA = 160;
     private double startImageTime;
-    private boolean cameraResponding = false;
-    private int timeOutNumber = 0;
     private boolean firstImage = true;
     
+    /**
+     * Connects to the camera in the background so execute() never waits on it.
+     */
+    private CameraConnector connector;
+    
+    /**
+     * The number of images in a row the camera failed to return.
+     */
+    private int imageFailures = 0;
+    
+    /**
+     * The number of failed images in a row before the camera is treated as
+     * lost and reconnected.
+     */
+    private static final int MAX_IMAGE_FAILURES = 3;
+    
+    /**
+     * The flags in the vision {@link SubsystemStatus}. Its state is 1 when the
+     * camera is ready, measurement 1 is the distance to the target and 
+     * measurement 2 is the target location in the image.
+     */
+    public static final int STATUS_HOT_GOAL = 1;
+    
     private int boundingRectHeight;
-    private final static int MAX_STORED_PICTURES = 50;
     private boolean shouldSaveImage = true;
 
     private Vision() {
@@ -78,7 +97,6 @@ public class Vision extends GenericSubsystem {
      * starts camera and some of the image criteria
      */
     public void init() {
-        logWriter = LogWriter.getInstance();
         target = new TargetReport();
         horizontalTargets = new int[MAX_PARTICLES];
         verticalTargets = new int[MAX_PARTICLES];
@@ -87,25 +105,8 @@ public class Vision extends GenericSubsystem {
         cameraLights = new Solenoid(IO.DEFAULT_SLOT, IO.CAMERA_LIGHT_RELAY);
         cameraLights.set(true);
         camera = AxisCamera.getInstance();// get an instance of the camera 
-        try {
-            Thread.sleep(2000);
-        } catch (InterruptedException ex) {
-            ex.printStackTrace();
-        }
-        while (!cameraResponding && timeOutNumber <= 30) {
-            try {
-                Thread.sleep(1000);
-                camera.getImage();
-                cameraResponding = true;
-            } catch (Exception e) {
-                timeOutNumber++;
-            }
-        }
-
-        if (!cameraResponding) {
-            log.logError("Camera not Responding");
-            log.logMessage("THE CAMERA HAS FAILING (SILLY PEOPLE)!!!!!!!!!!");
-        }
+        connector = new CameraConnector(camera, log);
+        connector.start();
     }
 
     /**
@@ -114,7 +115,7 @@ public class Vision extends GenericSubsystem {
      * @throws Exception
      */
     public void execute() throws Exception {
-        if (cameraResponding) {
+        if (connector.isReady()) {
             if(needImage){
                 cameraLights.set(true);
                 if(!firstImage){
@@ -127,6 +128,24 @@ public class Vision extends GenericSubsystem {
             }
             saveImage();
         }
+        publishStatus(connector.isReady() ? 1 : 0, imageHotGoal ? STATUS_HOT_GOAL : 0, 
+                imageDistance, imageLocation);
+    }
+
+    /**
+     * @return if the camera is responding. Images are only processed while it
+     * is.
+     */
+    public boolean isCameraReady() {
+        return connector != null && connector.isReady();
+    }
+
+    /**
+     * @return the time in seconds the camera last became ready, or 0 if it
+     * never has
+     */
+    public double getCameraReadyTime() {
+        return connector == null ? 0 : connector.getReadyTime();
     }
 
     /**
@@ -189,29 +208,46 @@ public class Vision extends GenericSubsystem {
 
     /**
      * Gets an image and uses color and small particle conversions to find
-     * target.
+     * target. After MAX_IMAGE_FAILURES failures in a row the camera is 
+     * reconnected in the background.
      *
+     * @return if an image was returned by the camera
      * @throws NIVisionException
      */
-    private void getImage() throws NIVisionException {
-        startImageTime = Timer.getFPGATimestamp();
+    private boolean getImage() throws NIVisionException {
+        startImageTime = now();
         image = null;
+        thresholdImage = null;
+        filteredImage = null;
         try {
             image = camera.getImage();
         } catch (Exception e) {
             log.logError("Issue with getting image from the camera: " + e.getMessage());
         }
+        if (image == null) {
+            imageFailures++;
+            if (imageFailures >= MAX_IMAGE_FAILURES) {
+                imageFailures = 0;
+                connector.lost();
+            }
+            return false;
+        }
+        imageFailures = 0;
         thresholdImage = image.thresholdRGB(0, 206, 225, 255, 0, 255);   // keep only green objects
         filteredImage = thresholdImage.particleFilter(cc);           // filter out small particles 
+        return true;
     }
 
     /**
      * Finds the target and then calculates the center of the vertical tape.
      *
+     * @return if an image was returned by the camera
      * @throws NIVisionException
      */
-    private void findCenterofTarget() throws NIVisionException {
-        getImage();
+    private boolean findCenterofTarget() throws NIVisionException {
+        if (!getImage()) {
+            return false;
+        }
         //iterate through each particle and score to see if it is a target
         scores = new Scores[filteredImage.getNumberParticles()];
         horizontalTargetCount = verticalTargetCount = 0;
@@ -232,6 +268,7 @@ public class Vision extends GenericSubsystem {
                 }
             }
         }
+        return true;
     }
 
     /**
@@ -242,7 +279,9 @@ public class Vision extends GenericSubsystem {
      * @throws NIVisionException
      */
     private void getBestTarget() throws NIVisionException {
-        findCenterofTarget();
+        if (!findCenterofTarget()) {
+            return;
+        }
         target.totalScore = target.leftScore = target.rightScore = target.tapeWidthScore = target.verticalScore = 0;
         target.verticalIndex = verticalTargets[0];
         for (int i = 0; i < verticalTargetCount; i++) {
@@ -311,9 +350,15 @@ public class Vision extends GenericSubsystem {
      */
     private void freeImage() {
         try {
-            filteredImage.free();
-            thresholdImage.free();
-            image.free();
+            if (filteredImage != null) {
+                filteredImage.free();
+            }
+            if (thresholdImage != null) {
+                thresholdImage.free();
+            }
+            if (image != null) {
+                image.free();
+            }
         } catch (NIVisionException ex) {
             log.logError("Issue freeing the images from the camera: " + ex.getMessage());
         }
@@ -454,7 +499,7 @@ public class Vision extends GenericSubsystem {
      * @return if the best goal is hot or not
      */
     public boolean isHotGoal() {
-        return imageHotGoal;
+        return getStatus().isSet(STATUS_HOT_GOAL);
     }
 
     /**
@@ -500,16 +545,21 @@ public class Vision extends GenericSubsystem {
      * value
      */
     public double getLastImageTime() {
-        return (Timer.getFPGATimestamp() - startImageTime);
+        return (Clock.get().seconds() - startImageTime);
     }
 
     /**
-     * Sets weather to store an image or release it
+     * Hands the image to the {@link ImageWriter} if one was asked for. The
+     * ImageWriter frees it, so it is not freed here.
      */
     private void saveImage() {
-        if (ds.isEnabled() && shouldSaveImage) {
-            logWriter.writeImage(image);
-            log.logMessage("Image has been saved");
+        if (ds.isEnabled() && shouldSaveImage && image != null) {
+            if (ImageWriter.getInstance().save(image)) {
+                log.logMessage("Image queued to be saved");
+            } else {
+                log.logError("Image dropped, too many waiting to be saved");
+            }
+            image = null;
             shouldSaveImage = false;
         }
     }
@@ -519,9 +569,9 @@ public class Vision extends GenericSubsystem {
     }
     
     public void logInfo() {
+        log.logMessage("Camera ready: " + isCameraReady() + " Connects: " + connector.getConnects());
         log.logMessage("Dist to goal: " + getDistanceToGoal());
         log.logMessage("Dist to Target: " + getTargetDistance());
         log.logMessage("Hot Target: " + isHotGoal());
-        log.logMessage("Average Runtime: " + getAverageRuntime() + "seconds");
     }
 }
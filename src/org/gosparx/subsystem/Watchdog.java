@@ -0,0 +1,232 @@
+package org.gosparx.subsystem;
+
+import org.gosparx.util.Clock;
+import org.gosparx.util.FlightRecorder;
+import org.gosparx.util.Logger;
+
+/**
+ * Watches subsystems for stalled loops. Every subsystem publishes when its
+ * last loop started and finished (see {@link GenericSubsystem#runIteration}).
+ * If a watched subsystem goes more than its allowed number of periods without
+ * finishing a loop, the watchdog calls its
+ * {@link GenericSubsystem#safeOutput() safeOutput()}, logs the trip and
+ * has the {@link FlightRecorder}s dumped.
+ *
+ * The check only reads volatile fields, so it can not be blocked by the
+ * stalled thread. Every subsystem that trips in one pass is set to its safe
+ * output before anything is logged, and the pass asks for a single dump. The
+ * dump is written by a separate thread, so the watchdog never waits for the
+ * flash or for a dump another thread is already writing.
+ */
+public class Watchdog extends Thread {
+
+    /**
+     * The most subsystems that can be watched.
+     */
+    private static final int MAX_WATCHED = 10;
+
+    /**
+     * The time in ms between checks.
+     */
+    private static final int CHECK_PERIOD = 5;
+
+    /**
+     * The watched subsystems.
+     */
+    private GenericSubsystem[] watched = new GenericSubsystem[MAX_WATCHED];
+
+    /**
+     * The time in microseconds each subsystem may go without finishing a loop.
+     */
+    private long[] limits = new long[MAX_WATCHED];
+
+    /**
+     * If each subsystem is currently tripped.
+     */
+    private boolean[] tripped = new boolean[MAX_WATCHED];
+
+    /**
+     * The number of times each subsystem has tripped.
+     */
+    private int[] tripCounts = new int[MAX_WATCHED];
+
+    /**
+     * The number of watched subsystems.
+     */
+    private int watchedCount = 0;
+
+    /**
+     * The time in ms between checks for a requested dump.
+     */
+    private static final int DUMP_CHECK_PERIOD = 20;
+
+    /**
+     * Why the flight recorders should be dumped, or null if they should not.
+     * Set by the watchdog and cleared by the dump thread.
+     */
+    private volatile String dumpReason = null;
+
+    /**
+     * Writes the dumps the watchdog asks for.
+     */
+    private final Thread dumper = new Thread("Watchdog dump"){
+        public void run(){
+            while(true){
+                String reason = dumpReason;
+                if(reason != null){
+                    dumpReason = null;
+                    String file = FlightRecorder.dumpAll(reason);
+                    if(file != null){
+                        log.logError("Flight recorder dumped to " + file);
+                    }
+                }
+                try {
+                    Thread.sleep(DUMP_CHECK_PERIOD);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    };
+
+    /**
+     * Used for logging trips.
+     */
+    private Logger log;
+
+    /**
+     * Creates a new Watchdog.
+     */
+    public Watchdog(){
+        super("Watchdog");
+        setPriority(Thread.MAX_PRIORITY);
+        log = new Logger(Logger.SUB_WATCHDOG);
+    }
+
+    /**
+     * Starts the watchdog and the thread that writes its dumps.
+     */
+    public synchronized void start(){
+        dumper.start();
+        super.start();
+    }
+
+    /**
+     * Watches a subsystem. Must be called before {@link #start()}.
+     *
+     * @param subsystem the subsystem to watch
+     * @param missedPeriods the number of {@link GenericSubsystem#sleepTime()
+     * periods} the subsystem may go without finishing a loop
+     * @return if the subsystem is being watched
+     */
+    public synchronized boolean watch(GenericSubsystem subsystem, int missedPeriods){
+        if(isAlive() || watchedCount >= MAX_WATCHED){
+            log.logError("Could not watch " + subsystem.getName());
+            return false;
+        }
+        watched[watchedCount] = subsystem;
+        limits[watchedCount] = (long) missedPeriods * subsystem.sleepTime() * 1000;
+        watchedCount++;
+        return true;
+    }
+
+    /**
+     * @param subsystem a watched subsystem
+     * @return the number of times the subsystem has tripped, or 0 if it is not
+     * watched
+     */
+    public int getTripCount(GenericSubsystem subsystem){
+        for(int i = 0; i < watchedCount; i++){
+            if(watched[i] == subsystem){
+                return tripCounts[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Checks every watched subsystem every CHECK_PERIOD ms.
+     */
+    public void run(){
+        int count;
+        synchronized(this){
+            count = watchedCount;
+        }
+        long[] sinceFinish = new long[count];
+        boolean[] tripping = new boolean[count];
+        while(true){
+            //Every stalled subsystem is made safe before anything is logged
+            long now = Clock.get().micros();
+            boolean stalled = false;
+            for(int i = 0; i < count; i++){
+                stalled |= tripped[i];
+            }
+            boolean anyTripping = false;
+            for(int i = 0; i < count; i++){
+                tripping[i] = check(i, now, sinceFinish);
+                anyTripping |= tripping[i];
+            }
+            if(anyTripping){
+                //Subsystems that stall while another is still stalled are
+                //part of the same problem, which was already dumped
+                logTrips(now, sinceFinish, tripping, !stalled);
+            }
+            try {
+                Thread.sleep(CHECK_PERIOD);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Checks one subsystem, setting its safe output if it just stalled or
+     * clearing it if it recovered.
+     *
+     * @param i the index of the subsystem
+     * @param now the time of this pass in microseconds
+     * @param sinceFinish filled with the time since each subsystem last
+     * finished a loop
+     * @return if the subsystem just tripped
+     */
+    private boolean check(int i, long now, long[] sinceFinish){
+        long finish = watched[i].getHeartbeatFinish();
+        if(finish == 0){
+            return false;//Not running yet
+        }
+        sinceFinish[i] = now - finish;
+        if(!tripped[i] && sinceFinish[i] > limits[i]){
+            watched[i].safeOutput();
+            tripped[i] = true;
+            tripCounts[i]++;
+            return true;
+        }else if(tripped[i] && sinceFinish[i] <= limits[i]){
+            tripped[i] = false;
+            log.logMessage(watched[i].getName() + " recovered after stall " + tripCounts[i]);
+        }
+        return false;
+    }
+
+    /**
+     * Logs the subsystems that tripped in this pass and asks for one dump of
+     * the flight recorders.
+     *
+     * @param dump if the flight recorders should be dumped
+     */
+    private void logTrips(long now, long[] sinceFinish, boolean[] tripping, boolean dump){
+        StringBuffer reason = new StringBuffer();
+        for(int i = 0; i < tripping.length; i++){
+            if(!tripping[i]){
+                continue;
+            }
+            long sinceStart = now - watched[i].getHeartbeatStart();
+            log.logError(watched[i].getName() + " stalled, forced safe output. Last loop finished " +
+                    sinceFinish[i] / 1000 + " ms ago, execute() started " + sinceStart / 1000 +
+                    " ms ago, limit " + limits[i] / 1000 + " ms");
+            reason.append(reason.length() == 0 ? "" : ", ").append(watched[i].getName());
+        }
+        if(dump){
+            dumpReason = reason.append(" stalled").toString();
+        }
+    }
+}
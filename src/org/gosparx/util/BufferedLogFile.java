@@ -0,0 +1,227 @@
+package org.gosparx.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An append only log file that stays open and collects lines in memory. The
+ * lines are written to the stream when the buffer is full, when the oldest
+ * unwritten line is older than the max age, or when {@link #flush()} is
+ * called. Nothing is allocated after it is created.
+ *
+ * Times are passed in by the caller in microseconds so this class does not
+ * depend on the robot's clock.
+ */
+public class BufferedLogFile {
+
+    /**
+     * The stream the log is written to.
+     */
+    private final OutputStream out;
+
+    /**
+     * The lines not yet written to the stream.
+     */
+    private final byte[] buffer;
+
+    /**
+     * The number of bytes in the buffer.
+     */
+    private int count = 0;
+
+    /**
+     * The longest in microseconds a line may sit in the buffer.
+     */
+    private final long maxAge;
+
+    /**
+     * The time in microseconds the oldest line in the buffer was added.
+     */
+    private long oldest = 0;
+
+    /**
+     * The number of bytes written to the stream.
+     */
+    private long bytesWritten = 0;
+
+    /**
+     * The number of times the buffer was written to the stream.
+     */
+    private int flushes = 0;
+
+    /**
+     * @param out - the stream to append to
+     * @param size - the size of the buffer in bytes
+     * @param maxAgeMicros - the longest in microseconds a line may sit in the
+     * buffer
+     */
+    public BufferedLogFile(OutputStream out, int size, long maxAgeMicros){
+        this.out = out;
+        this.buffer = new byte[size];
+        this.maxAge = maxAgeMicros;
+    }
+
+    /**
+     * Adds a line to the buffer. Characters above 255 are truncated to a byte.
+     * @param line - the text to add, including its line ending
+     * @param now - the current time in microseconds
+     * @throws IOException if the buffer had to be written and could not be
+     */
+    public void write(String line, long now) throws IOException {
+        int length = line.length();
+        if(count + length > buffer.length){
+            flush();
+        }
+        if(count == 0){
+            oldest = now;
+        }
+        for(int i = 0; i < length; i++){
+            if(count == buffer.length){
+                flush();
+            }
+            buffer[count++] = (byte)line.charAt(i);
+        }
+        flushIfOld(now);
+    }
+
+    /**
+     * Starts a binary record. Call before writing its fields so the age of
+     * the buffer is known.
+     * @param now - the current time in microseconds
+     */
+    public void startRecord(long now){
+        if(count == 0){
+            oldest = now;
+        }
+    }
+
+    /**
+     * @param value - the low 8 bits are written
+     * @throws IOException if the buffer had to be written and could not be
+     */
+    public void writeByte(int value) throws IOException {
+        if(count == buffer.length){
+            flush();
+        }
+        buffer[count++] = (byte)value;
+    }
+
+    /**
+     * @param value - the low 16 bits are written, high byte first
+     * @throws IOException if the buffer had to be written and could not be
+     */
+    public void writeShort(int value) throws IOException {
+        writeByte(value >> 8);
+        writeByte(value);
+    }
+
+    /**
+     * @param value - written high byte first
+     * @throws IOException if the buffer had to be written and could not be
+     */
+    public void writeInt(int value) throws IOException {
+        writeShort(value >> 16);
+        writeShort(value);
+    }
+
+    /**
+     * @param value - written high byte first, like DataOutputStream
+     * @throws IOException if the buffer had to be written and could not be
+     */
+    public void writeDouble(double value) throws IOException {
+        long bits = Double.doubleToLongBits(value);
+        writeInt((int)(bits >> 32));
+        writeInt((int)bits);
+    }
+
+    /**
+     * Writes the length as 16 bits and then each character as a byte.
+     * Characters above 255 are truncated to a byte.
+     * @param text - the text, at most 65535 characters are written
+     * @throws IOException if the buffer had to be written and could not be
+     */
+    public void writeText(String text) throws IOException {
+        int length = Math.min(text.length(), 0xFFFF);
+        writeShort(length);
+        for(int i = 0; i < length; i++){
+            writeByte(text.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the buffer to the stream if its oldest line is older than the
+     * max age.
+     * @param now - the current time in microseconds
+     * @return if the buffer was written
+     * @throws IOException if the buffer could not be written
+     */
+    public boolean flushIfOld(long now) throws IOException {
+        if(count > 0 && now - oldest >= maxAge){
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param now - the current time in microseconds
+     * @return the time in microseconds until the oldest line must be written,
+     * or the max age if the buffer is empty
+     */
+    public long timeUntilFlush(long now){
+        if(count == 0){
+            return maxAge;
+        }
+        return Math.max(0, oldest + maxAge - now);
+    }
+
+    /**
+     * Writes the buffer to the stream.
+     * @throws IOException if the buffer could not be written
+     */
+    public void flush() throws IOException {
+        if(count == 0){
+            return;
+        }
+        int length = count;
+        count = 0;
+        out.write(buffer, 0, length);
+        out.flush();
+        bytesWritten += length;
+        flushes++;
+    }
+
+    /**
+     * Writes the buffer and closes the stream.
+     * @throws IOException if the buffer could not be written or the stream
+     * closed
+     */
+    public void close() throws IOException {
+        try{
+            flush();
+        }finally{
+            out.close();
+        }
+    }
+
+    /**
+     * @return the number of bytes written to the stream
+     */
+    public long getBytesWritten(){
+        return bytesWritten;
+    }
+
+    /**
+     * @return the number of bytes written to the stream and in the buffer
+     */
+    public long getSize(){
+        return bytesWritten + count;
+    }
+
+    /**
+     * @return the number of times the buffer was written to the stream
+     */
+    public int getFlushes(){
+        return flushes;
+    }
+}
@@ -0,0 +1,49 @@
+package org.gosparx.util;
+
+/**
+ * The time source used by the subsystems. By default this is the FPGA clock,
+ * but it can be swapped for a {@link SimulatedClock} so that time dependent
+ * state machines can be stepped faster than real time.
+ */
+public abstract class Clock {
+
+    /**
+     * The clock everything uses.
+     */
+    private static Clock clock = new FPGAClock();
+
+    /**
+     * @return the clock everything uses
+     */
+    public static Clock get(){
+        return clock;
+    }
+
+    /**
+     * Replaces the clock everything uses. Call before the subsystems start.
+     * @param newClock - the new clock
+     */
+    public static void set(Clock newClock){
+        clock = newClock;
+    }
+
+    /**
+     * @return the current time in microseconds. Never goes backwards.
+     */
+    public abstract long micros();
+
+    /**
+     * @return the current time in seconds
+     */
+    public double seconds(){
+        return micros() / 1000000.0;
+    }
+
+    /**
+     * @return the current time in nanoseconds, for profiling. Only as precise
+     * as {@link #micros()}.
+     */
+    public long nanos(){
+        return micros() * 1000;
+    }
+}
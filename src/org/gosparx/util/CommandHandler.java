@@ -0,0 +1,15 @@
+package org.gosparx.util;
+
+/**
+ * Applies the commands drained from a {@link CommandRing}.
+ */
+public interface CommandHandler {
+
+    /**
+     * Applies one command. Called on the thread that owns the ring.
+     * @param command - the command id
+     * @param arg1 - the first argument
+     * @param arg2 - the second argument
+     */
+    public void handleCommand(int command, double arg1, double arg2);
+}
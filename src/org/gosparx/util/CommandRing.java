@@ -0,0 +1,132 @@
+package org.gosparx.util;
+
+/**
+ * A bounded single producer, single consumer queue of commands. A command is
+ * an id and up to two double arguments, stored in preallocated arrays so
+ * posting and draining never allocate or lock. Only the producer thread may
+ * call {@link #post(int, double, double)} and only the consumer thread may
+ * call {@link #drain(CommandHandler)}.
+ *
+ * The producer only writes tail and the consumer only writes head, each
+ * through a volatile field, so a slot is never read before it is written or
+ * written before it is read.
+ */
+public class CommandRing {
+
+    /**
+     * The number of slots. Must be a power of 2.
+     */
+    private static final int SIZE = 32;
+    private static final int MASK = SIZE - 1;
+
+    private final int[] commands = new int[SIZE];
+    private final double[] args1 = new double[SIZE];
+    private final double[] args2 = new double[SIZE];
+
+    /**
+     * The {@link Clock} time in microseconds each command was posted.
+     */
+    private final long[] postTimes = new long[SIZE];
+
+    /**
+     * The thread allowed to post. Changed only while the ring is empty and
+     * its old producer is dead.
+     */
+    private volatile Thread producer;
+
+    /**
+     * The number of commands taken by the consumer.
+     */
+    private volatile int head = 0;
+
+    /**
+     * The number of commands posted by the producer.
+     */
+    private volatile int tail = 0;
+
+    /**
+     * The number of commands dropped because the ring was full.
+     */
+    private int dropped = 0;
+
+    /**
+     * @param producer - the only thread that will post to this ring
+     */
+    public CommandRing(Thread producer){
+        this.producer = producer;
+    }
+
+    /**
+     * @return the only thread that may post to this ring
+     */
+    public Thread getProducer(){
+        return producer;
+    }
+
+    /**
+     * Hands the ring to a new thread. Only call when the old producer is dead
+     * and the ring is empty.
+     * @param producer - the new producer
+     */
+    public void setProducer(Thread producer){
+        this.producer = producer;
+    }
+
+    /**
+     * Posts a command. Producer thread only.
+     * @param command - the command id
+     * @param arg1 - the first argument
+     * @param arg2 - the second argument
+     * @return false if the ring was full and the command was dropped
+     */
+    public boolean post(int command, double arg1, double arg2){
+        int t = tail;
+        if(t - head >= SIZE){
+            dropped++;
+            return false;
+        }
+        int slot = t & MASK;
+        commands[slot] = command;
+        args1[slot] = arg1;
+        args2[slot] = arg2;
+        postTimes[slot] = Clock.get().micros();
+        tail = t + 1;
+        return true;
+    }
+
+    /**
+     * Applies every posted command in order. Consumer thread only.
+     * @param handler - applies each command
+     * @return the time in microseconds the oldest drained command was posted,
+     * or 0 if there were none
+     */
+    public long drain(CommandHandler handler){
+        int h = head;
+        int t = tail;
+        if(h == t){
+            return 0;
+        }
+        long oldest = postTimes[h & MASK];
+        while(h != t){
+            int slot = h & MASK;
+            handler.handleCommand(commands[slot], args1[slot], args2[slot]);
+            h++;
+            head = h;
+        }
+        return oldest;
+    }
+
+    /**
+     * @return if there are commands that have not been drained
+     */
+    public boolean isEmpty(){
+        return head == tail;
+    }
+
+    /**
+     * @return the number of commands dropped because the ring was full
+     */
+    public int getDropped(){
+        return dropped;
+    }
+}
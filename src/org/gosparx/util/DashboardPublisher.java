@@ -0,0 +1,351 @@
+package org.gosparx.util;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import org.gosparx.subsystem.GenericSubsystem;
+
+/**
+ * Publishes values to the SmartDashboard from one thread at a fixed rate.
+ * Subsystems register a key once and then set its value as often as they
+ * like. A key is only sent when its value changed since it was last sent, or
+ * when it has not been sent for dashboardMaxAge ms, so unchanged values stop
+ * flooding NetworkTables. Several changes between two publishes are
+ * coalesced into one put. The publish period is dashboardPeriod ms. Both are
+ * read from loggingConfig.txt.
+ */
+public class DashboardPublisher extends GenericSubsystem {
+
+    /**
+     * The most keys that can be registered.
+     */
+    private static final int MAX_KEYS = 32;
+
+    /**
+     * The time in ms between publishes, 10 Hz unless set.
+     */
+    private int publishPeriod = 100;
+
+    /**
+     * The longest in seconds an unchanged key goes without being resent, so
+     * a dashboard that connects late still gets every value.
+     */
+    private double maxAge = 1.0;
+
+    private static final int TYPE_NUMBER = 0;
+    private static final int TYPE_BOOLEAN = 1;
+    private static final int TYPE_STRING = 2;
+
+    /**
+     * The bytes counted for a number or boolean value, on top of its key.
+     */
+    private static final int NUMBER_BYTES = 8;
+    private static final int BOOLEAN_BYTES = 1;
+
+    /**
+     * The only DashboardPublisher.
+     */
+    private static DashboardPublisher publisher;
+
+    private final String[] keys = new String[MAX_KEYS];
+    private final int[] types = new int[MAX_KEYS];
+    private final double[] numbers = new double[MAX_KEYS];
+    private final boolean[] booleans = new boolean[MAX_KEYS];
+    private final String[] strings = new String[MAX_KEYS];
+
+    /**
+     * If each key changed since it was last sent.
+     */
+    private final boolean[] dirty = new boolean[MAX_KEYS];
+
+    /**
+     * The time in seconds each key was last sent.
+     */
+    private final double[] lastSent = new double[MAX_KEYS];
+
+    /**
+     * The number of registered keys.
+     */
+    private int keyCount = 0;
+
+    /**
+     * The number of puts sent to the SmartDashboard, and their size.
+     */
+    private int updatesSent = 0;
+    private long bytesSent = 0;
+
+    /**
+     * The number of puts that were not sent because the value had not
+     * changed or was overwritten before it was sent, and their size.
+     */
+    private int updatesSaved = 0;
+    private long bytesSaved = 0;
+
+    /**
+     * @return the only DashboardPublisher
+     */
+    public static DashboardPublisher getInstance(){
+        if(publisher == null){
+            publisher = new DashboardPublisher();
+        }
+        return publisher;
+    }
+
+    /**
+     * Creates the DashboardPublisher.
+     */
+    private DashboardPublisher(){
+        super(Logger.SUB_DASHBOARD, Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Registers a number key.
+     * @param key - the SmartDashboard key
+     * @param value - the first value to send
+     * @return the handle used to set the key
+     */
+    public synchronized int addNumber(String key, double value){
+        int handle = add(key, TYPE_NUMBER);
+        if(handle >= 0){
+            //Not a set, so it does not count as a saved put
+            numbers[handle] = value;
+            dirty[handle] = true;
+        }
+        return handle;
+    }
+
+    /**
+     * Registers a boolean key.
+     * @param key - the SmartDashboard key
+     * @param value - the first value to send
+     * @return the handle used to set the key
+     */
+    public synchronized int addBoolean(String key, boolean value){
+        int handle = add(key, TYPE_BOOLEAN);
+        if(handle >= 0){
+            //Not a set, so it does not count as a saved put
+            booleans[handle] = value;
+            dirty[handle] = true;
+        }
+        return handle;
+    }
+
+    /**
+     * Registers a String key.
+     * @param key - the SmartDashboard key
+     * @param value - the first value to send
+     * @return the handle used to set the key
+     */
+    public synchronized int addString(String key, String value){
+        int handle = add(key, TYPE_STRING);
+        if(handle >= 0){
+            //Not a set, so it does not count as a saved put
+            strings[handle] = value;
+            dirty[handle] = true;
+        }
+        return handle;
+    }
+
+    /**
+     * Registers a key, or returns the handle it already has.
+     * @param key - the SmartDashboard key
+     * @param type - the type of its value
+     * @return the handle, or -1 if there is no room
+     */
+    private synchronized int add(String key, int type){
+        for(int i = 0; i < keyCount; i++){
+            if(keys[i].equals(key)){
+                return i;
+            }
+        }
+        if(keyCount >= MAX_KEYS){
+            log.logError("Too many dashboard keys, not publishing " + key);
+            return -1;
+        }
+        keys[keyCount] = key;
+        types[keyCount] = type;
+        dirty[keyCount] = true;
+        return keyCount++;
+    }
+
+    /**
+     * @param handle - a handle from {@link #addNumber(String, double)}
+     * @param value - the new value
+     */
+    public synchronized void setNumber(int handle, double value){
+        if(handle < 0){
+            return;
+        }
+        if(numbers[handle] == value){
+            saved(handle);
+            return;
+        }
+        numbers[handle] = value;
+        changed(handle);
+    }
+
+    /**
+     * @param handle - a handle from {@link #addBoolean(String, boolean)}
+     * @param value - the new value
+     */
+    public synchronized void setBoolean(int handle, boolean value){
+        if(handle < 0){
+            return;
+        }
+        if(booleans[handle] == value){
+            saved(handle);
+            return;
+        }
+        booleans[handle] = value;
+        changed(handle);
+    }
+
+    /**
+     * @param handle - a handle from {@link #addString(String, String)}
+     * @param value - the new value
+     */
+    public synchronized void setString(int handle, String value){
+        if(handle < 0){
+            return;
+        }
+        if(value.equals(strings[handle])){
+            saved(handle);
+            return;
+        }
+        strings[handle] = value;
+        changed(handle);
+    }
+
+    /**
+     * Marks a key as changed. If it already was, the earlier value is never
+     * sent and counts as saved.
+     * @param handle - the key
+     */
+    private void changed(int handle){
+        if(dirty[handle]){
+            saved(handle);
+        }
+        dirty[handle] = true;
+    }
+
+    /**
+     * Counts a put that did not have to be sent.
+     * @param handle - the key
+     */
+    private void saved(int handle){
+        updatesSaved++;
+        bytesSaved += size(handle);
+    }
+
+    /**
+     * @param handle - the key
+     * @return the approximate bytes a put of the key costs
+     */
+    private int size(int handle){
+        switch(types[handle]){
+            case TYPE_NUMBER:
+                return keys[handle].length() + NUMBER_BYTES;
+            case TYPE_BOOLEAN:
+                return keys[handle].length() + BOOLEAN_BYTES;
+            default:
+                return keys[handle].length() + (strings[handle] == null ? 0 : strings[handle].length());
+        }
+    }
+
+    /**
+     * Reads the publish period and the resend age from loggingConfig.txt.
+     */
+    public void init() {
+        LogWriter logWriter = LogWriter.getInstance();
+        publishPeriod = (int)logWriter.longSetting("dashboardPeriod", publishPeriod);
+        maxAge = logWriter.longSetting("dashboardMaxAge", (long)(maxAge * 1000)) / 1000.0;
+    }
+
+    /**
+     * The settings come from loggingConfig.txt, which the LogWriter reads.
+     */
+    protected GenericSubsystem[] getDependencies() {
+        return new GenericSubsystem[]{LogWriter.getInstance()};
+    }
+
+    /**
+     * Sends every key that changed or was sent longer than maxAge ago.
+     */
+    public void execute() throws Exception {
+        double time = now();
+        int count;
+        synchronized(this){
+            count = keyCount;
+        }
+        for(int i = 0; i < count; i++){
+            int type;
+            double number;
+            boolean bool;
+            String string;
+            synchronized(this){
+                if(!dirty[i] && time - lastSent[i] < maxAge){
+                    continue;
+                }
+                dirty[i] = false;
+                type = types[i];
+                number = numbers[i];
+                bool = booleans[i];
+                string = strings[i];
+                updatesSent++;
+                bytesSent += size(i);
+            }
+            lastSent[i] = time;
+            switch(type){
+                case TYPE_NUMBER:
+                    SmartDashboard.putNumber(keys[i], number);
+                    break;
+                case TYPE_BOOLEAN:
+                    SmartDashboard.putBoolean(keys[i], bool);
+                    break;
+                default:
+                    if(string != null){
+                        SmartDashboard.putString(keys[i], string);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return the number of puts sent to the SmartDashboard
+     */
+    public synchronized int getUpdatesSent(){
+        return updatesSent;
+    }
+
+    /**
+     * @return the number of puts that did not have to be sent
+     */
+    public synchronized int getUpdatesSaved(){
+        return updatesSaved;
+    }
+
+    /**
+     * @return the approximate bytes sent to the SmartDashboard
+     */
+    public synchronized long getBytesSent(){
+        return bytesSent;
+    }
+
+    /**
+     * @return the approximate bytes that did not have to be sent
+     */
+    public synchronized long getBytesSaved(){
+        return bytesSaved;
+    }
+
+    public void liveWindow() {
+    }
+
+    public int sleepTime() {
+        return publishPeriod;
+    }
+
+    public void logInfo() {
+        log.logMessage("Dashboard updates sent: " + getUpdatesSent() + " (" + getBytesSent() +
+                " bytes) Saved: " + getUpdatesSaved() + " (" + getBytesSaved() + " bytes)");
+    }
+}
@@ -0,0 +1,150 @@
+package org.gosparx.util;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * An immutable copy of the {@link DriverStation} mode flags and match time.
+ * One snapshot is captured per scheduler tick (or whenever the current one is
+ * older than {@link #MAX_AGE}) and published through a volatile reference, so
+ * every subsystem and every log message in the same cycle sees the same mode
+ * without making its own native DriverStation calls.
+ */
+public final class DriverStationSnapshot {
+
+    /**
+     * The oldest in seconds a snapshot may be before {@link #refresh()}
+     * captures a new one.
+     */
+    public static final double MAX_AGE = 0.005;
+
+    /**
+     * The mode ids returned by {@link #getMode()}, also used in the binary
+     * log.
+     */
+    public static final int MODE_DISABLED = 0;
+    public static final int MODE_AUTO = 1;
+    public static final int MODE_TELEOP = 2;
+
+    /**
+     * The most recently captured snapshot.
+     */
+    private static volatile DriverStationSnapshot current;
+
+    private final boolean enabled;
+    private final boolean autonomous;
+    private final boolean operatorControl;
+    private final boolean test;
+
+    /**
+     * The match time in seconds when the snapshot was captured.
+     */
+    private final double matchTime;
+
+    /**
+     * The FPGA time in seconds when the snapshot was captured.
+     */
+    private final double captureTime;
+
+    /**
+     * Reads every value from the DriverStation.
+     * @param ds - the DriverStation
+     */
+    private DriverStationSnapshot(DriverStation ds){
+        enabled = ds.isEnabled();
+        autonomous = ds.isAutonomous();
+        operatorControl = ds.isOperatorControl();
+        test = ds.isTest();
+        matchTime = ds.getMatchTime();
+        captureTime = Clock.get().seconds();
+    }
+
+    /**
+     * Captures and publishes a new snapshot.
+     * @return the new snapshot
+     */
+    public static DriverStationSnapshot capture(){
+        DriverStationSnapshot snapshot = new DriverStationSnapshot(DriverStation.getInstance());
+        current = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Captures a new snapshot only if the current one is older than
+     * {@link #MAX_AGE}.
+     * @return the current snapshot
+     */
+    public static DriverStationSnapshot refresh(){
+        DriverStationSnapshot snapshot = current;
+        if(snapshot == null || Clock.get().seconds() - snapshot.captureTime > MAX_AGE){
+            snapshot = capture();
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the last published snapshot, capturing one if there is none
+     */
+    public static DriverStationSnapshot get(){
+        DriverStationSnapshot snapshot = current;
+        if(snapshot == null){
+            snapshot = capture();
+        }
+        return snapshot;
+    }
+
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    public boolean isAutonomous(){
+        return autonomous;
+    }
+
+    public boolean isOperatorControl(){
+        return operatorControl;
+    }
+
+    public boolean isTest(){
+        return test;
+    }
+
+    /**
+     * @return the match time in seconds when the snapshot was captured
+     */
+    public double getMatchTime(){
+        return matchTime;
+    }
+
+    /**
+     * @return the FPGA time in seconds when the snapshot was captured
+     */
+    public double getCaptureTime(){
+        return captureTime;
+    }
+
+    /**
+     * @return MODE_AUTO or MODE_TELEOP when enabled in that mode, otherwise
+     * MODE_DISABLED
+     */
+    public int getMode(){
+        if(autonomous && enabled){
+            return MODE_AUTO;
+        }else if(operatorControl && enabled){
+            return MODE_TELEOP;
+        }
+        return MODE_DISABLED;
+    }
+
+    /**
+     * @return the three letter mode used in log messages: "Aut", "Tel" or
+     * "Dis"
+     */
+    public String getModeTag(){
+        if(autonomous && enabled){
+            return "Aut";
+        }else if(operatorControl && enabled){
+            return "Tel";
+        }
+        return "Dis";
+    }
+}
@@ -0,0 +1,54 @@
+package org.gosparx.util;
+
+import edu.wpi.first.wpilibj.Utility;
+
+/**
+ * The real {@link Clock}, read from the FPGA. The FPGA counter is 32 bits of
+ * microseconds and rolls over about every 71 minutes, so the roll overs are
+ * counted to keep the time going forward.
+ *
+ * Reading never locks, so the {@link org.gosparx.subsystem.Watchdog} and
+ * every Logger call can read the clock without waiting on another thread.
+ * Each read puts the raw counter in the roll over of the newest time read
+ * so far, the one within half a roll over of it. That is right as long as
+ * something reads the clock at least every 35 minutes.
+ */
+public class FPGAClock extends Clock {
+
+    /**
+     * The number of microseconds in one roll over of the FPGA counter.
+     */
+    private static final long ROLLOVER = 1L << 32;
+    private static final long MASK = ROLLOVER - 1;
+
+    /**
+     * The newest time read, in microseconds since the FPGA started. Threads
+     * reading at the same time may store it slightly out of order, which
+     * only moves it back by less than the time between their reads.
+     */
+    private volatile long newest;
+
+    /**
+     * Starts from the current counter, which may already be past half a roll
+     * over.
+     */
+    public FPGAClock(){
+        newest = Utility.getFPGATime() & MASK;
+    }
+
+    public long micros(){
+        long last = newest;
+        long time = (last & ~MASK) | (Utility.getFPGATime() & MASK);
+        if(time < last - ROLLOVER / 2){
+            //The counter rolled over since the last read
+            time += ROLLOVER;
+        }else if(time > last + ROLLOVER / 2){
+            //Read before a roll over another thread already saw
+            time -= ROLLOVER;
+        }
+        if(time > last){
+            newest = time;
+        }
+        return time;
+    }
+}
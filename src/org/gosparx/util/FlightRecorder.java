@@ -0,0 +1,191 @@
+package org.gosparx.util;
+
+import com.sun.squawk.microedition.io.FileConnection;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.microedition.io.Connector;
+
+/**
+ * Keeps the last SIZE loops of one subsystem in memory: when each started,
+ * how long execute() took, the published state, flags and measurements, and
+ * the first MAX_OUTPUTS commanded outputs. Recording a loop is a handful of
+ * array stores, so it is always on.
+ *
+ * When something goes wrong {@link #dumpAll(String)} writes every recorder
+ * to crash&lt;log sequence&gt;_&lt;n&gt;.txt itself, not through the
+ * LogWriter, so the loops leading up to it are saved even if the LogWriter
+ * never gets to run again. Only the owning thread may call
+ * {@link #record}. A dump reads the other threads' recorders without
+ * locking, so the newest loop of a subsystem that is still running may be
+ * half written.
+ */
+public class FlightRecorder {
+
+    /**
+     * The number of loops kept. Must be a power of 2.
+     */
+    public static final int SIZE = 64;
+    private static final int MASK = SIZE - 1;
+
+    /**
+     * The number of outputs kept for each loop.
+     */
+    public static final int MAX_OUTPUTS = 4;
+
+    /**
+     * The most recorders that will be dumped.
+     */
+    private static final int MAX_RECORDERS = 16;
+
+    /**
+     * The most dumps written per boot, so an exception thrown every loop
+     * cannot fill the flash.
+     */
+    public static final int MAX_DUMPS = 4;
+
+    private static final FlightRecorder[] recorders = new FlightRecorder[MAX_RECORDERS];
+    private static int recorderCount = 0;
+    private static int dumps = 0;
+
+    /**
+     * The name of the subsystem, printed in the dump.
+     */
+    private final String name;
+
+    private final long[] starts = new long[SIZE];
+    private final int[] executeTimes = new int[SIZE];
+    private final boolean[] threw = new boolean[SIZE];
+    private final int[] states = new int[SIZE];
+    private final int[] flags = new int[SIZE];
+    private final double[] measurements1 = new double[SIZE];
+    private final double[] measurements2 = new double[SIZE];
+    private final double[] outputs = new double[SIZE * MAX_OUTPUTS];
+
+    /**
+     * The number of loops recorded.
+     */
+    private volatile int count = 0;
+
+    /**
+     * Makes a recorder and adds it to the ones that are dumped.
+     * @param name - the name of the subsystem
+     */
+    public FlightRecorder(String name){
+        this.name = name;
+        synchronized(FlightRecorder.class){
+            if(recorderCount < MAX_RECORDERS){
+                recorders[recorderCount++] = this;
+            }else{
+                System.out.println("Too many flight recorders, " + name + " will not be dumped");
+            }
+        }
+    }
+
+    /**
+     * Records one loop. Owning thread only.
+     * @param start - the {@link Clock} time in microseconds the loop started
+     * @param executeTime - the time execute() took in microseconds
+     * @param threw - if execute() threw
+     * @param state - the published state id
+     * @param flag - the published flag bits
+     * @param measurement1 - the first published measurement
+     * @param measurement2 - the second published measurement
+     * @param output0 - the first commanded output
+     * @param output1 - the second commanded output
+     * @param output2 - the third commanded output
+     * @param output3 - the fourth commanded output
+     */
+    public void record(long start, int executeTime, boolean threw, int state, int flag,
+            double measurement1, double measurement2,
+            double output0, double output1, double output2, double output3){
+        int c = count;
+        int slot = c & MASK;
+        starts[slot] = start;
+        executeTimes[slot] = executeTime;
+        this.threw[slot] = threw;
+        states[slot] = state;
+        flags[slot] = flag;
+        measurements1[slot] = measurement1;
+        measurements2[slot] = measurement2;
+        int o = slot * MAX_OUTPUTS;
+        outputs[o] = output0;
+        outputs[o + 1] = output1;
+        outputs[o + 2] = output2;
+        outputs[o + 3] = output3;
+        count = c + 1;
+    }
+
+    /**
+     * @return the number of loops recorded
+     */
+    public int getCount(){
+        return count;
+    }
+
+    /**
+     * Writes every recorder to a new crash file. Blocks while the file is
+     * written, so only call it once something has already gone wrong.
+     * @param reason - what went wrong, the first line of the file
+     * @return the name of the file, or null if nothing was written
+     */
+    public static synchronized String dumpAll(String reason){
+        if(dumps >= MAX_DUMPS){
+            return null;
+        }
+        String fileName = "crash" + LogWriter.getInstance().getSequence() + "_" + dumps + ".txt";
+        dumps++;
+        try{
+            FileConnection file = (FileConnection)Connector.open("file:///" + fileName, Connector.READ_WRITE);
+            try{
+                if(file.exists()){
+                    file.delete();
+                }
+                file.create();
+                OutputStream out = file.openOutputStream();
+                try{
+                    write(out, reason + "\nTime: " + Clock.get().micros() + " us\n");
+                    for(int i = 0; i < recorderCount; i++){
+                        recorders[i].dump(out);
+                    }
+                }finally{
+                    out.close();
+                }
+            }finally{
+                file.close();
+            }
+        }catch(IOException e){
+            e.printStackTrace();
+            return null;
+        }
+        return fileName;
+    }
+
+    /**
+     * Writes the recorded loops, oldest first.
+     */
+    private void dump(OutputStream out) throws IOException {
+        int c = count;
+        int first = Math.max(0, c - SIZE);
+        write(out, "\n" + name + ": " + (c - first) + " of " + c + " loops\n" +
+                "start_us,execute_us,threw,state,flags,measurement1,measurement2,output0,output1,output2,output3\n");
+        StringBuffer line = new StringBuffer();
+        for(int i = first; i < c; i++){
+            int slot = i & MASK;
+            int o = slot * MAX_OUTPUTS;
+            line.setLength(0);
+            line.append(starts[slot]).append(',').append(executeTimes[slot]).append(',')
+                    .append(threw[slot] ? 1 : 0).append(',').append(states[slot]).append(',')
+                    .append(flags[slot]).append(',').append(measurements1[slot]).append(',')
+                    .append(measurements2[slot]);
+            for(int j = 0; j < MAX_OUTPUTS; j++){
+                line.append(',').append(outputs[o + j]);
+            }
+            line.append('\n');
+            write(out, line.toString());
+        }
+    }
+
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes());
+    }
+}
@@ -0,0 +1,368 @@
+package org.gosparx.util;
+
+import com.sun.squawk.microedition.io.FileConnection;
+import edu.wpi.first.wpilibj.image.ColorImage;
+import edu.wpi.first.wpilibj.image.NIVisionException;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import javax.microedition.io.Connector;
+import org.gosparx.subsystem.GenericSubsystem;
+
+/**
+ * Saves camera images to flash from its own low priority thread, so the
+ * thread that took the picture never waits for it to be encoded. A saved
+ * image is handed over with {@link #save(ColorImage)} and freed once it is
+ * written. Images waiting to be written may use at most imageBudget bytes of
+ * memory. When a new one does not fit, the imageDrop setting picks whether
+ * it or the oldest waiting ones are dropped.
+ *
+ * Images are named Shot&lt;n&gt;, numbered from the {@link PersistentStore},
+ * and only the newest imageRetention of them are kept. They are written as
+ * PNG, or with imageFormat=raw as uncompressed BMP, which is much faster to
+ * write and several times larger.
+ */
+public class ImageWriter extends GenericSubsystem {
+
+    public static final String DIRECTORY = "file:///ShooterPictures//";
+
+    /**
+     * Where older code kept the image number, read once to carry it over.
+     */
+    private static final String OLD_CONFIG = "//photoConfig.txt";
+
+    private static final String IMAGE_KEY = "vision.imageNumber";
+    private static final String PREFIX = "Shot";
+    private static final String PNG = ".png";
+    private static final String RAW = ".bmp";
+
+    /**
+     * The most images that can wait to be written, whatever their size.
+     */
+    private static final int MAX_QUEUED = 8;
+
+    /**
+     * The bytes of memory per pixel of a color image.
+     */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /**
+     * The only ImageWriter.
+     */
+    private static ImageWriter writer;
+
+    /**
+     * The images waiting to be written, in a ring, and their sizes.
+     */
+    private final ColorImage[] queue = new ColorImage[MAX_QUEUED];
+    private final long[] queueBytes = new long[MAX_QUEUED];
+    private int head = 0;
+    private int queued = 0;
+
+    /**
+     * The bytes used by the waiting images and the one being written.
+     */
+    private long pendingBytes = 0;
+
+    /**
+     * Settings from loggingConfig.txt.
+     */
+    private long budget = 2500000;
+    private int retention = 50;
+    private boolean dropOldest = false;
+    private String extension = PNG;
+
+    /**
+     * The number of the next image written.
+     */
+    private int imageNumber;
+
+    private int saved = 0;
+    private int dropped = 0;
+    private int failed = 0;
+
+    /**
+     * @return the only ImageWriter
+     */
+    public static ImageWriter getInstance(){
+        if(writer == null){
+            writer = new ImageWriter();
+        }
+        return writer;
+    }
+
+    /**
+     * Creates the ImageWriter.
+     */
+    private ImageWriter(){
+        super(Logger.SUB_IMAGES, Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Reads the settings and deletes the images past the retention limit.
+     */
+    public void init() {
+        LogWriter logWriter = LogWriter.getInstance();
+        budget = logWriter.longSetting("imageBudget", budget);
+        retention = (int)logWriter.longSetting("imageRetention", retention);
+        dropOldest = logWriter.stringSetting("imageDrop", "newest").equals("oldest");
+        if(logWriter.stringSetting("imageFormat", "png").equals("raw")){
+            extension = RAW;
+        }
+        PersistentStore store = PersistentStore.getInstance();
+        if(store.getString(IMAGE_KEY, null) == null){
+            //Only until the number is in the store
+            imageNumber = readOldConfig();
+            store.putInt(IMAGE_KEY, imageNumber);
+        }else{
+            imageNumber = store.getInt(IMAGE_KEY, 0);
+        }
+        try{
+            deleteOldImages();
+        }catch(IOException e){
+            log.logError("Could not clean up images: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The settings come from loggingConfig.txt, which the LogWriter reads.
+     */
+    protected GenericSubsystem[] getDependencies() {
+        return new GenericSubsystem[]{LogWriter.getInstance()};
+    }
+
+    /**
+     * Queues an image to be written. The ImageWriter owns the image from now
+     * on and frees it, even if it is dropped.
+     * @param image - the image
+     * @return false if the image was dropped
+     */
+    public boolean save(ColorImage image){
+        long bytes;
+        try{
+            bytes = (long)image.getWidth() * image.getHeight() * BYTES_PER_PIXEL;
+        }catch(NIVisionException e){
+            bytes = budget;
+        }
+        synchronized(this){
+            while(dropOldest && queued > 0 && pendingBytes + bytes > budget){
+                free(take());
+                dropped++;
+            }
+            //One image is always let in, or a large one could never be saved
+            if(queued == MAX_QUEUED || (pendingBytes > 0 && pendingBytes + bytes > budget)){
+                dropped++;
+            }else{
+                queue[(head + queued) % MAX_QUEUED] = image;
+                queueBytes[(head + queued) % MAX_QUEUED] = bytes;
+                queued++;
+                pendingBytes += bytes;
+                return true;
+            }
+        }
+        free(image);
+        return false;
+    }
+
+    /**
+     * Removes the oldest waiting image and takes its bytes off the pending
+     * ones.
+     */
+    private ColorImage take(){
+        ColorImage image = queue[head];
+        queue[head] = null;
+        pendingBytes -= queueBytes[head];
+        head = (head + 1) % MAX_QUEUED;
+        queued--;
+        return image;
+    }
+
+    /**
+     * Writes the oldest waiting image, if there is one.
+     */
+    public void execute() throws Exception {
+        ColorImage image;
+        long bytes;
+        synchronized(this){
+            if(queued == 0){
+                return;
+            }
+            bytes = queueBytes[head];
+            image = take();
+            //Still in memory until it is written
+            pendingBytes += bytes;
+        }
+        try{
+            write(image);
+        }finally{
+            free(image);
+            synchronized(this){
+                pendingBytes -= bytes;
+            }
+        }
+    }
+
+    /**
+     * Writes the image as the next Shot and deletes the one that falls out
+     * of retention.
+     */
+    private void write(ColorImage image){
+        String name = PREFIX + imageNumber + extension;
+        try{
+            image.write(DIRECTORY + name);
+        }catch(NIVisionException e){
+            failed++;
+            log.logError("Could not write " + name + ": " + e.getMessage());
+            return;
+        }
+        saved++;
+        imageNumber++;
+        PersistentStore.getInstance().putInt(IMAGE_KEY, imageNumber);
+        int oldest = imageNumber - retention - 1;
+        if(oldest >= 0){
+            try{
+                deleteFile(DIRECTORY + PREFIX + oldest + PNG);
+                deleteFile(DIRECTORY + PREFIX + oldest + RAW);
+            }catch(IOException e){
+                log.logError("Could not delete " + PREFIX + oldest + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void free(ColorImage image){
+        try{
+            image.free();
+        }catch(NIVisionException e){
+            log.logError("Could not free an image: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes every Shot older than the newest imageRetention, including
+     * ones left from a larger retention or from older code. If the image
+     * number was lost, it continues after the newest Shot found.
+     */
+    private void deleteOldImages() throws IOException {
+        FileConnection directory = (FileConnection)Connector.open(DIRECTORY, Connector.READ_WRITE);
+        try{
+            if(!directory.exists()){
+                directory.mkdir();
+                return;
+            }
+            Enumeration files = directory.list();
+            while(files.hasMoreElements()){
+                int number = shotNumber((String)files.nextElement());
+                if(number >= imageNumber){
+                    imageNumber = number + 1;
+                }
+            }
+            files = directory.list();
+            while(files.hasMoreElements()){
+                String name = (String)files.nextElement();
+                int number = shotNumber(name);
+                if(number != -1 && number < imageNumber - retention){
+                    deleteFile(DIRECTORY + name);
+                }
+            }
+        }finally{
+            directory.close();
+        }
+    }
+
+    /**
+     * @param name - a file name
+     * @return the number of the Shot, or -1 if it is not one
+     */
+    private static int shotNumber(String name){
+        if(!name.startsWith(PREFIX) || !(name.endsWith(PNG) || name.endsWith(RAW))){
+            return -1;
+        }
+        try{
+            //Both extensions are the same length
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - PNG.length()));
+        }catch(NumberFormatException e){
+            return -1;
+        }
+    }
+
+    private static void deleteFile(String path) throws IOException {
+        FileConnection file = (FileConnection)Connector.open(path, Connector.READ_WRITE);
+        try{
+            if(file.exists()){
+                file.delete();
+            }
+        }finally{
+            file.close();
+        }
+    }
+
+    /**
+     * @return the image number older code kept in photoConfig.txt, or 0
+     */
+    private int readOldConfig(){
+        try{
+            FileConnection config = (FileConnection)Connector.open(DIRECTORY + OLD_CONFIG, Connector.READ);
+            try{
+                if(config.exists()){
+                    DataInputStream in = config.openDataInputStream();
+                    try{
+                        StringBuffer number = new StringBuffer();
+                        for(int c = in.read(); c >= '0' && c <= '9'; c = in.read()){
+                            number.append((char)c);
+                        }
+                        return Integer.parseInt(number.toString());
+                    }finally{
+                        in.close();
+                    }
+                }
+            }finally{
+                config.close();
+            }
+        }catch(IOException e){
+            log.logError("Could not read " + OLD_CONFIG + ": " + e.getMessage());
+        }catch(NumberFormatException e){
+            log.logError("Bad image number in " + OLD_CONFIG + ": " + e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of images written
+     */
+    public int getSaved(){
+        return saved;
+    }
+
+    /**
+     * @return the number of images dropped because too many were waiting
+     */
+    public synchronized int getDropped(){
+        return dropped;
+    }
+
+    /**
+     * @return the number of images that could not be written
+     */
+    public int getFailed(){
+        return failed;
+    }
+
+    /**
+     * @return the number of images waiting to be written
+     */
+    public synchronized int getQueued(){
+        return queued;
+    }
+
+    public void liveWindow() {
+    }
+
+    public int sleepTime() {
+        return 100;
+    }
+
+    public void logInfo() {
+        log.logMessage("Images saved: " + getSaved() + " Dropped: " + getDropped()
+                + " Failed: " + getFailed() + " Waiting: " + getQueued());
+    }
+}
@@ -0,0 +1,172 @@
+package org.gosparx.util;
+
+/**
+ * A fixed bucket histogram of times in microseconds. Nothing is allocated
+ * after it is created, so it is cheap enough to record into on every loop of
+ * a control subsystem. Percentiles are reported as the upper edge of the
+ * bucket they fall in, the max is exact.
+ *
+ * Buckets are FINE_WIDTH wide up to FINE_LIMIT, then COARSE_WIDTH wide up to
+ * COARSE_LIMIT. Anything larger goes into the last bucket.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The width in microseconds of the fine buckets.
+     */
+    private static final int FINE_WIDTH = 250;
+
+    /**
+     * The upper limit in microseconds of the fine buckets.
+     */
+    private static final int FINE_LIMIT = 25000;
+
+    /**
+     * The width in microseconds of the coarse buckets.
+     */
+    private static final int COARSE_WIDTH = 5000;
+
+    /**
+     * The upper limit in microseconds of the coarse buckets.
+     */
+    private static final int COARSE_LIMIT = 250000;
+
+    /**
+     * The number of fine buckets.
+     */
+    private static final int FINE_BUCKETS = FINE_LIMIT / FINE_WIDTH;
+
+    /**
+     * The total number of buckets, including the overflow bucket.
+     */
+    private static final int BUCKETS = FINE_BUCKETS + (COARSE_LIMIT - FINE_LIMIT) / COARSE_WIDTH + 1;
+
+    /**
+     * The number of values in each bucket.
+     */
+    private final int[] counts = new int[BUCKETS];
+
+    /**
+     * The number of values recorded since the last reset.
+     */
+    private int count;
+
+    /**
+     * The sum of the values recorded since the last reset.
+     */
+    private long sum;
+
+    /**
+     * The largest value recorded since the last reset.
+     */
+    private long max;
+
+    /**
+     * Records a value.
+     * @param micros - the time in microseconds. Negative values count as 0.
+     */
+    public void record(long micros){
+        if(micros < 0){
+            micros = 0;
+        }
+        int bucket;
+        if(micros < FINE_LIMIT){
+            bucket = (int)(micros / FINE_WIDTH);
+        }else if(micros < COARSE_LIMIT){
+            bucket = FINE_BUCKETS + (int)((micros - FINE_LIMIT) / COARSE_WIDTH);
+        }else{
+            bucket = BUCKETS - 1;
+        }
+        counts[bucket]++;
+        count++;
+        sum += micros;
+        if(micros > max){
+            max = micros;
+        }
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset(){
+        for(int i = 0; i < BUCKETS; i++){
+            counts[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * @param percent - the percentile wanted, 0 to 100
+     * @return the upper edge in microseconds of the bucket the percentile
+     * falls in, capped at the max. 0 if nothing has been recorded.
+     */
+    public long getPercentile(int percent){
+        if(count == 0){
+            return 0;
+        }
+        long wanted = ((long)count * percent + 99) / 100;
+        if(wanted < 1){
+            wanted = 1;
+        }
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts[i];
+            if(seen >= wanted){
+                return Math.min(upperEdge(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @param bucket - the bucket index
+     * @return the upper edge of the bucket in microseconds
+     */
+    private long upperEdge(int bucket){
+        if(bucket < FINE_BUCKETS){
+            return (long)(bucket + 1) * FINE_WIDTH;
+        }else if(bucket < BUCKETS - 1){
+            return FINE_LIMIT + (long)(bucket - FINE_BUCKETS + 1) * COARSE_WIDTH;
+        }
+        return max;
+    }
+
+    /**
+     * @return the number of values recorded since the last reset
+     */
+    public int getCount(){
+        return count;
+    }
+
+    /**
+     * @return the largest value in microseconds recorded since the last reset
+     */
+    public long getMax(){
+        return max;
+    }
+
+    /**
+     * @return the mean in microseconds of the values since the last reset
+     */
+    public double getMean(){
+        return (count == 0) ? 0 : (double)sum / count;
+    }
+
+    /**
+     * @return a one line summary in ms: "p50/p90/p99/max ms (count)"
+     */
+    public String summary(){
+        return toMs(getPercentile(50)) + "/" + toMs(getPercentile(90)) + "/" +
+                toMs(getPercentile(99)) + "/" + toMs(max) + " ms (" + count + ")";
+    }
+
+    /**
+     * @param micros - a time in microseconds
+     * @return the time in ms
+     */
+    private static double toMs(long micros){
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,232 @@
+package org.gosparx.util;
+
+import edu.wpi.first.wpilibj.DriverStationLCD;
+import org.gosparx.subsystem.GenericSubsystem;
+
+/**
+ * Draws the driver station LCD from one thread at a fixed low rate. The top
+ * lines are status lines and the rest show the newest errors, newest at the
+ * bottom. Posting an error or setting a status only stores it and marks the
+ * display dirty, so a burst of errors costs one LCD update instead of one per
+ * error. A line is only sent when its text changed.
+ *
+ * Status lines are templates with up to two numbers, using the Logger's
+ * "{}" and "{i}" placeholders, so setting one does not allocate.
+ */
+public class LcdDisplay extends GenericSubsystem {
+
+    /**
+     * The time in ms between renders (4 Hz).
+     */
+    private static final int RENDER_PERIOD = 250;
+
+    private static final DriverStationLCD.Line[] LINES = {
+        DriverStationLCD.Line.kUser1, DriverStationLCD.Line.kUser2,
+        DriverStationLCD.Line.kUser3, DriverStationLCD.Line.kUser4,
+        DriverStationLCD.Line.kUser5, DriverStationLCD.Line.kUser6
+    };
+
+    /**
+     * The most status lines. The other lines are always left for errors.
+     */
+    private static final int MAX_STATUS = 3;
+
+    /**
+     * The only LcdDisplay.
+     */
+    private static LcdDisplay display;
+
+    private final String[] statusTemplates = new String[MAX_STATUS];
+    private final double[] statusArgs = new double[MAX_STATUS * 2];
+    private int statusCount = 0;
+
+    /**
+     * The newest errors, in a ring. errorCount is the number ever posted.
+     */
+    private final String[] errors = new String[LINES.length];
+    private int errorCount = 0;
+
+    /**
+     * If anything changed since the last render.
+     */
+    private boolean dirty = true;
+
+    /**
+     * The subsystems whose p99 execute time is shown, and the status line it
+     * is shown on.
+     */
+    private GenericSubsystem[] timed = new GenericSubsystem[0];
+    private int loopTimeLine = -1;
+
+    /**
+     * The text last sent to each line.
+     */
+    private final String[] shown = new String[LINES.length];
+
+    private final LogFormatter formatter = new LogFormatter();
+    private final double[] args = new double[2];
+
+    /**
+     * The number of LCD updates sent.
+     */
+    private int updates = 0;
+
+    /**
+     * @return the only LcdDisplay
+     */
+    public static LcdDisplay getInstance(){
+        if(display == null){
+            display = new LcdDisplay();
+        }
+        return display;
+    }
+
+    /**
+     * Creates the LcdDisplay.
+     */
+    private LcdDisplay(){
+        super(Logger.SUB_LCD, Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Adds a status line below the ones already added.
+     * @param template - the text, with up to two "{}" or "{i}" placeholders
+     * @return the handle used to set the line, or -1 if there is no room
+     */
+    public synchronized int addStatus(String template){
+        if(statusCount >= MAX_STATUS){
+            log.logError("Too many LCD status lines, not showing " + template);
+            return -1;
+        }
+        statusTemplates[statusCount] = template;
+        dirty = true;
+        return statusCount++;
+    }
+
+    /**
+     * @param handle - a handle from {@link #addStatus(String)}
+     * @param arg0 - the first number in the line
+     * @param arg1 - the second number in the line
+     */
+    public synchronized void setStatus(int handle, double arg0, double arg1){
+        if(handle < 0){
+            return;
+        }
+        if(statusArgs[handle * 2] != arg0 || statusArgs[handle * 2 + 1] != arg1){
+            statusArgs[handle * 2] = arg0;
+            statusArgs[handle * 2 + 1] = arg1;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Adds a status line with the p99 execute time of each subsystem, in ms,
+     * as each subsystem last published it. Call once during init.
+     * @param subsystems - the subsystems to show
+     */
+    public void showLoopTimes(GenericSubsystem[] subsystems){
+        int line = addStatus("p99 ms");
+        synchronized(this){
+            timed = subsystems;
+            loopTimeLine = line;
+        }
+    }
+
+    /**
+     * Shows an error at the bottom of the LCD on the next render.
+     * @param message - the error
+     */
+    public synchronized void postError(String message){
+        errors[errorCount % errors.length] = message;
+        errorCount++;
+        dirty = true;
+    }
+
+    public void init() {
+    }
+
+    /**
+     * Sends the lines that changed. The loop times are always redrawn, the
+     * rest only when something was posted or set.
+     */
+    public void execute() throws Exception {
+        synchronized(this){
+            if(!dirty && loopTimeLine == -1){
+                return;
+            }
+            dirty = false;
+        }
+        boolean changed = false;
+        for(int i = 0; i < LINES.length; i++){
+            String text = render(i);
+            if(!text.equals(shown[i])){
+                shown[i] = text;
+                DriverStationLCD.getInstance().println(LINES[i], 1, text);
+                changed = true;
+            }
+        }
+        if(changed){
+            DriverStationLCD.getInstance().updateLCD();
+            updates++;
+        }
+    }
+
+    /**
+     * @param line - the LCD line
+     * @return the text of the line, padded to the width of the LCD so it
+     * covers what was there before
+     */
+    private String render(int line){
+        formatter.clear();
+        synchronized(this){
+            if(line == loopTimeLine){
+                formatter.append(statusTemplates[line]);
+                for(int i = 0; i < timed.length; i++){
+                    formatter.append(' ');
+                    formatter.append(timed[i].getName().substring(0, 2));
+                    args[0] = (timed[i].getExecuteP99() + 999) / 1000;
+                    formatter.appendMessage("{i}", args, 1, null);
+                }
+            }else if(line < statusCount){
+                args[0] = statusArgs[line * 2];
+                args[1] = statusArgs[line * 2 + 1];
+                formatter.appendMessage(statusTemplates[line], args, 2, null);
+            }else{
+                //The newest error goes on the last line
+                int error = errorCount - (LINES.length - line);
+                if(error >= 0){
+                    formatter.append(errors[error % errors.length]);
+                }
+            }
+        }
+        while(formatter.getLength() < DriverStationLCD.kLineLength){
+            formatter.append(' ');
+        }
+        return formatter.getMessage();
+    }
+
+    /**
+     * @return the number of LCD updates sent
+     */
+    public int getUpdates(){
+        return updates;
+    }
+
+    /**
+     * @return the number of errors posted
+     */
+    public synchronized int getErrorCount(){
+        return errorCount;
+    }
+
+    public void liveWindow() {
+    }
+
+    public int sleepTime() {
+        return RENDER_PERIOD;
+    }
+
+    public void logInfo() {
+        log.logMessage("LCD updates: " + getUpdates() + " Errors: " + getErrorCount());
+    }
+}
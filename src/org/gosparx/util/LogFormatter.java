@@ -0,0 +1,277 @@
+package org.gosparx.util;
+
+/**
+ * The binary log format, and turning a log record back into the text line
+ * the robot used to write: "(DEBUG)[0012.3450] {Tel} Drive: message". Used
+ * by the {@link LogWriter} for the console and by the desktop log decoder, so
+ * both print the same text. Depends on nothing from WPILib.
+ *
+ * A template is the message text with a placeholder for each argument:
+ * "{}" is a double, "{i}" a whole number, "{b}" a boolean and "{s}" the
+ * record's text.
+ */
+public class LogFormatter {
+
+    public static final int LEVEL_DEBUG = 0;
+    public static final int LEVEL_ERROR = 1;
+
+    /**
+     * The start of every binary log file, followed by a version byte.
+     */
+    public static final String LOG_MAGIC = "GSLOG";
+    public static final int LOG_VERSION = 1;
+
+    /**
+     * Record types in the binary log written by the {@link LogWriter}. A
+     * subsystem record is an 8 bit id and the name as text, a template record
+     * a 16 bit id and the template as text. A message record is the 16 bit template id, the 8 bit subsystem
+     * id, the level in the high and the mode in the low 4 bits of a byte, the
+     * 32 bit match time in ten thousandths of a second, and then each
+     * argument of the template: a double, a 32 bit int, a byte for a boolean
+     * or the text. Text is a 16 bit length and a byte per character.
+     */
+    public static final int RECORD_SUBSYSTEM = 'S';
+    public static final int RECORD_TEMPLATE = 'T';
+    public static final int RECORD_MESSAGE = 'M';
+
+    public static final int ARG_DOUBLE = 0;
+    public static final int ARG_INT = 1;
+    public static final int ARG_BOOLEAN = 2;
+    public static final int ARG_TEXT = 3;
+
+    /**
+     * The template of messages logged as a plain String.
+     */
+    public static final String TEXT_TEMPLATE = "{s}";
+
+    /**
+     * The mode tags, indexed by {@link DriverStationSnapshot#getMode()}.
+     */
+    private static final String[] MODE_TAGS = {"Dis", "Aut", "Tel"};
+
+    private static final int DIGITS_IN_TIME = 8;
+    private static final int PRECISION = 4;
+
+    /**
+     * @param template - a message template
+     * @return the type of each placeholder in the template, in order
+     */
+    public static int[] argTypes(String template){
+        int count = 0;
+        for(int i = template.indexOf('{'); i != -1; i = template.indexOf('{', i + 1)){
+            if(placeholderType(template, i) != -1){
+                count++;
+            }
+        }
+        int[] types = new int[count];
+        count = 0;
+        for(int i = template.indexOf('{'); i != -1; i = template.indexOf('{', i + 1)){
+            int type = placeholderType(template, i);
+            if(type != -1){
+                types[count++] = type;
+            }
+        }
+        return types;
+    }
+
+    /**
+     * @param template - a message template
+     * @param i - the index of a '{'
+     * @return the type of the placeholder at i, or -1 if there is none
+     */
+    private static int placeholderType(String template, int i){
+        if(template.startsWith("{}", i)){
+            return ARG_DOUBLE;
+        }else if(template.startsWith("{i}", i)){
+            return ARG_INT;
+        }else if(template.startsWith("{b}", i)){
+            return ARG_BOOLEAN;
+        }else if(template.startsWith("{s}", i)){
+            return ARG_TEXT;
+        }
+        return -1;
+    }
+
+    /**
+     * The line being formatted, one byte per character.
+     */
+    private byte[] line = new byte[128];
+
+    /**
+     * The number of bytes in the line.
+     */
+    private int length = 0;
+
+    /**
+     * Where the message starts in the line, after the prefix.
+     */
+    private int messageStart = 0;
+
+    /**
+     * Holds the digits of a number while it is formatted.
+     */
+    private final char[] digits = new char[20];
+
+    /**
+     * Starts a new line with the prefix the Logger used to put in front of
+     * every message: "(DEBUG)[0012.3450] {Tel} Drive: ". Nothing is
+     * allocated.
+     * @param level - LEVEL_DEBUG or LEVEL_ERROR
+     * @param time - the match time in ten thousandths of a second
+     * @param mode - the mode id
+     * @param subsystem - the subsystem name
+     */
+    public void startLine(int level, int time, int mode, String subsystem){
+        length = 0;
+        boolean error = level == LEVEL_ERROR;
+        append(error ? "(ERROR)[" : "(DEBUG)[");
+        //Zero padded to DIGITS_IN_TIME, with a '.' before the last PRECISION
+        int count = toDigits(time);
+        int padded = Math.max(count, DIGITS_IN_TIME);
+        for(int i = 0; i < padded; i++){
+            if(i == padded - PRECISION){
+                append('.');
+            }
+            append(i < padded - count ? '0' : digits[digits.length - padded + i]);
+        }
+        append(error ? "]{" : "] {");
+        append(mode >= 0 && mode < MODE_TAGS.length ? MODE_TAGS[mode] : "???");
+        append(error ? "}" : "} ");
+        append(subsystem);
+        append(": ");
+        messageStart = length;
+    }
+
+    /**
+     * Starts a new line with no prefix.
+     */
+    public void clear(){
+        length = 0;
+        messageStart = 0;
+    }
+
+    /**
+     * Fills in a template at the end of the line. Only doubles allocate.
+     * @param template - the message template
+     * @param args - the numeric arguments, in placeholder order
+     * @param argCount - the number of numeric arguments given; missing ones
+     * are 0
+     * @param text - the text for a "{s}" placeholder
+     */
+    public void appendMessage(String template, double[] args, int argCount, String text){
+        int arg = 0;
+        int start = 0;
+        for(int i = template.indexOf('{'); i != -1; i = template.indexOf('{', i + 1)){
+            int type = placeholderType(template, i);
+            if(type == -1){
+                continue;
+            }
+            append(template, start, i);
+            if(type == ARG_TEXT){
+                append(text == null ? "null" : text);
+            }else{
+                double value = arg < argCount ? args[arg] : 0;
+                arg++;
+                if(type == ARG_INT){
+                    appendLong((long)value);
+                }else if(type == ARG_BOOLEAN){
+                    append(value != 0 ? "true" : "false");
+                }else{
+                    append(String.valueOf(value));
+                }
+            }
+            start = template.indexOf('}', i) + 1;
+            i = start - 1;
+        }
+        append(template, start, template.length());
+    }
+
+    /**
+     * @param text - added to the end of the line
+     */
+    public void append(String text){
+        append(text, 0, text.length());
+    }
+
+    private void append(String text, int start, int end){
+        ensureRoom(end - start);
+        for(int i = start; i < end; i++){
+            line[length++] = (byte)text.charAt(i);
+        }
+    }
+
+    /**
+     * @param c - added to the end of the line
+     */
+    public void append(char c){
+        ensureRoom(1);
+        line[length++] = (byte)c;
+    }
+
+    private void appendLong(long value){
+        int count = toDigits(value);
+        for(int i = digits.length - count; i < digits.length; i++){
+            append(digits[i]);
+        }
+    }
+
+    /**
+     * Writes a number into the end of digits, with a '-' in front if it is
+     * negative.
+     * @param value - the number
+     * @return the number of characters written
+     */
+    private int toDigits(long value){
+        int i = digits.length;
+        boolean negative = value < 0;
+        do{
+            int digit = (int)(value % 10);
+            digits[--i] = (char)('0' + (negative ? -digit : digit));
+            value /= 10;
+        }while(value != 0);
+        if(negative){
+            digits[--i] = '-';
+        }
+        return digits.length - i;
+    }
+
+    /**
+     * Grows the line if a very long message does not fit.
+     */
+    private void ensureRoom(int count){
+        if(length + count > line.length){
+            byte[] bigger = new byte[Math.max(line.length * 2, length + count)];
+            System.arraycopy(line, 0, bigger, 0, length);
+            line = bigger;
+        }
+    }
+
+    /**
+     * @return the line so far, one byte per character. Only the first
+     * {@link #getLength()} bytes are used.
+     */
+    public byte[] getLine(){
+        return line;
+    }
+
+    /**
+     * @return the number of bytes in the line
+     */
+    public int getLength(){
+        return length;
+    }
+
+    /**
+     * @return the message part of the line, without the prefix
+     */
+    public String getMessage(){
+        return new String(line, messageStart, length - messageStart);
+    }
+
+    /**
+     * @return the line
+     */
+    public String toString(){
+        return new String(line, 0, length);
+    }
+}
@@ -0,0 +1,108 @@
+package org.gosparx.util;
+
+/**
+ * A token bucket rate limit for one log call site. Each message takes a
+ * token, tokens come back at a fixed rate up to a burst size, and messages
+ * with no token left are counted instead of logged. The count is reported
+ * with the next message that gets through.
+ *
+ * Make one with {@link Logger#limit(String, double, int)} and check it with
+ * {@link Logger#allow(LogLimit)}. Only one thread should use a LogLimit.
+ */
+public class LogLimit {
+
+    /**
+     * The name used in loggingConfig.txt and in the suppressed message.
+     */
+    private final String name;
+
+    /**
+     * The tokens added per second.
+     */
+    private volatile double rate;
+
+    /**
+     * The most tokens the bucket holds.
+     */
+    private volatile int burst;
+
+    private double tokens;
+
+    /**
+     * The {@link Clock} time in microseconds tokens were last added.
+     */
+    private long lastRefill = 0;
+
+    /**
+     * The number of messages suppressed since one last got through.
+     */
+    private int suppressed = 0;
+
+    /**
+     * The number of messages ever suppressed.
+     */
+    private int totalSuppressed = 0;
+
+    /**
+     * @param name - the name used in loggingConfig.txt
+     * @param rate - the messages allowed per second
+     * @param burst - the most messages allowed at once
+     */
+    LogLimit(String name, double rate, int burst){
+        this.name = name;
+        set(rate, burst);
+        tokens = burst;
+    }
+
+    /**
+     * @param rate - the messages allowed per second
+     * @param burst - the most messages allowed at once
+     */
+    void set(double rate, int burst){
+        this.rate = rate;
+        this.burst = Math.max(burst, 1);
+    }
+
+    /**
+     * Takes a token if there is one.
+     * @param now - the {@link Clock} time in microseconds
+     * @return if the message may be logged
+     */
+    boolean tryAcquire(long now){
+        if(lastRefill != 0){
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1000000.0);
+        }
+        lastRefill = now;
+        if(tokens >= 1){
+            tokens--;
+            return true;
+        }
+        suppressed++;
+        totalSuppressed++;
+        return false;
+    }
+
+    /**
+     * @return the number of messages suppressed since the last call, which
+     * resets it
+     */
+    int takeSuppressed(){
+        int count = suppressed;
+        suppressed = 0;
+        return count;
+    }
+
+    /**
+     * @return the name used in loggingConfig.txt
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * @return the number of messages ever suppressed
+     */
+    public int getTotalSuppressed(){
+        return totalSuppressed;
+    }
+}
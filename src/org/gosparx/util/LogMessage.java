@@ -5,25 +5,92 @@
 package org.gosparx.util;
 
 /**
+ * One log record: who logged it, when, and the template and arguments of the
+ * message. The LogWriter reuses a single LogMessage for every record it
+ * takes, so nothing is allocated per message.
  *
  * @author Alex_Fixed
  */
 public class LogMessage {
+
+    /**
+     * The most numeric arguments one message can have.
+     */
+    public static final int MAX_ARGS = 4;
+
     private int level;
-    private String message;
-    private String info;
-    public LogMessage(int level, String info, String message){
-        this.level = level;
-        this.message = message;
-        this.info = info;
-    }
+    private int subsystem;
+    private int mode;
+    private int time;
+    private int template;
+    private String text;
+    private int argCount;
+    private final double[] args = new double[MAX_ARGS];
+
     public int getLevel(){
         return level;
     }
-    public String getMessage(){
-        return message;
+
+    /**
+     * @return the subsystem id, from {@link LogWriter#addSubsystem(String)}
+     */
+    public int getSubsystem(){
+        return subsystem;
+    }
+
+    /**
+     * @return the {@link DriverStationSnapshot#getMode()} mode id
+     */
+    public int getMode(){
+        return mode;
+    }
+
+    /**
+     * @return the match time in ten thousandths of a second
+     */
+    public int getTime(){
+        return time;
+    }
+
+    /**
+     * @return the template id, from {@link LogWriter#addTemplate(String)}
+     */
+    public int getTemplate(){
+        return template;
+    }
+
+    /**
+     * @return the text for the template's "{s}" placeholder, or null
+     */
+    public String getText(){
+        return text;
     }
-    public String getInfo(){
-        return info;
+
+    /**
+     * @return the number of numeric arguments
+     */
+    public int getArgCount(){
+        return argCount;
+    }
+
+    /**
+     * @return the numeric arguments. Only the first getArgCount() are used.
+     */
+    public double[] getArgs(){
+        return args;
+    }
+
+    void set(int level, int subsystem, int mode, int time, int template, String text){
+        this.level = level;
+        this.subsystem = subsystem;
+        this.mode = mode;
+        this.time = time;
+        this.template = template;
+        this.text = text;
+        this.argCount = 0;
+    }
+
+    void addArg(double arg){
+        args[argCount++] = arg;
     }
 }
@@ -0,0 +1,224 @@
+package org.gosparx.util;
+
+/**
+ * A bounded single producer, single consumer queue of log records, stored in
+ * preallocated slots so posting never locks or allocates. Only the producer
+ * thread may call offer() and overwrite(), and only the consumer thread may
+ * call {@link #take(LogMessage)}.
+ *
+ * overwrite() writes over the oldest record when the ring is full. The
+ * producer bumps claimed before it touches a slot, so the consumer can tell a
+ * slot was written over while it was reading it and skip it instead of
+ * logging half of two records.
+ */
+public class LogRing {
+
+    /**
+     * The number of slots. Must be a power of 2.
+     */
+    public static final int SIZE = 64;
+    private static final int MASK = SIZE - 1;
+
+    private final int[] levels = new int[SIZE];
+    private final int[] subsystems = new int[SIZE];
+    private final int[] modes = new int[SIZE];
+    private final int[] times = new int[SIZE];
+    private final int[] templates = new int[SIZE];
+    private final String[] texts = new String[SIZE];
+    private final int[] argCounts = new int[SIZE];
+    private final double[] args = new double[SIZE * LogMessage.MAX_ARGS];
+
+    /**
+     * The {@link Clock} time in microseconds each message was posted.
+     */
+    private final long[] postTimes = new long[SIZE];
+
+    /**
+     * The thread allowed to post. Changed only while the ring is empty and
+     * its old producer is dead.
+     */
+    private volatile Thread producer;
+
+    /**
+     * The number of messages taken by the consumer.
+     */
+    private volatile int head = 0;
+
+    /**
+     * One more than the newest message the producer has started writing.
+     */
+    private volatile int claimed = 0;
+
+    /**
+     * The number of messages the producer has finished writing.
+     */
+    private volatile int tail = 0;
+
+    /**
+     * The number of messages the producer dropped. Written by the producer.
+     */
+    private int droppedNewest = 0;
+
+    /**
+     * The number of messages written over before they were taken. Written by
+     * the consumer.
+     */
+    private int droppedOldest = 0;
+
+    /**
+     * The most messages that have been waiting at once.
+     */
+    private int highWater = 0;
+
+    /**
+     * @param producer - the only thread that will post to this ring
+     */
+    public LogRing(Thread producer){
+        this.producer = producer;
+    }
+
+    /**
+     * @return the only thread that may post to this ring
+     */
+    public Thread getProducer(){
+        return producer;
+    }
+
+    /**
+     * Hands the ring to a new thread. Only call when the old producer is dead
+     * and the ring is empty.
+     * @param producer - the new producer
+     */
+    void setProducer(Thread producer){
+        this.producer = producer;
+    }
+
+    /**
+     * Posts a record if there is room. Producer thread only. The arguments
+     * are the fields of {@link LogMessage}, with the numeric arguments
+     * passed one by one.
+     * @return false if the ring was full and nothing was posted
+     */
+    public boolean offer(int level, int subsystem, int mode, int time, int template,
+            String text, int argCount, double arg0, double arg1, double arg2, double arg3){
+        int t = tail;
+        if(t - head >= SIZE){
+            return false;
+        }
+        write(t, level, subsystem, mode, time, template, text, argCount, arg0, arg1, arg2, arg3);
+        return true;
+    }
+
+    /**
+     * Posts a record, writing over the oldest record if the ring is full.
+     * Producer thread only. Takes the same arguments as offer().
+     */
+    public void overwrite(int level, int subsystem, int mode, int time, int template,
+            String text, int argCount, double arg0, double arg1, double arg2, double arg3){
+        write(tail, level, subsystem, mode, time, template, text, argCount, arg0, arg1, arg2, arg3);
+    }
+
+    /**
+     * Counts a message the producer gave up on. Producer thread only.
+     */
+    public void dropNewest(){
+        droppedNewest++;
+    }
+
+    private void write(int t, int level, int subsystem, int mode, int time, int template,
+            String text, int argCount, double arg0, double arg1, double arg2, double arg3){
+        claimed = t + 1;
+        int slot = t & MASK;
+        levels[slot] = level;
+        subsystems[slot] = subsystem;
+        modes[slot] = mode;
+        times[slot] = time;
+        templates[slot] = template;
+        texts[slot] = text;
+        argCounts[slot] = argCount;
+        int a = slot * LogMessage.MAX_ARGS;
+        args[a] = arg0;
+        args[a + 1] = arg1;
+        args[a + 2] = arg2;
+        args[a + 3] = arg3;
+        postTimes[slot] = Clock.get().micros();
+        tail = t + 1;
+        int waiting = Math.min(t + 1 - head, SIZE);
+        if(waiting > highWater){
+            highWater = waiting;
+        }
+    }
+
+    /**
+     * Consumer thread only.
+     * @return the time in microseconds the oldest message was posted, or
+     * Long.MAX_VALUE if the ring is empty
+     */
+    public long peekTime(){
+        int h = head;
+        int t = tail;
+        if(h == t){
+            return Long.MAX_VALUE;
+        }
+        if(t - h > SIZE){
+            h = t - SIZE;
+        }
+        return postTimes[h & MASK];
+    }
+
+    /**
+     * Takes the oldest message. Consumer thread only.
+     * @param into - set to the message
+     * @return false if the ring was empty
+     */
+    public boolean take(LogMessage into){
+        int h = head;
+        while(true){
+            int t = tail;
+            if(h == t){
+                head = h;
+                return false;
+            }
+            if(t - h > SIZE){
+                droppedOldest += t - h - SIZE;
+                h = t - SIZE;
+            }
+            int slot = h & MASK;
+            into.set(levels[slot], subsystems[slot], modes[slot], times[slot], templates[slot], texts[slot]);
+            int argCount = Math.min(argCounts[slot], LogMessage.MAX_ARGS);
+            int a = slot * LogMessage.MAX_ARGS;
+            for(int i = 0; i < argCount; i++){
+                into.addArg(args[a + i]);
+            }
+            if(claimed - h > SIZE){
+                //The producer started writing over this slot while it was read
+                droppedOldest++;
+                h++;
+                continue;
+            }
+            head = h + 1;
+            return true;
+        }
+    }
+
+    /**
+     * @return if there are messages that have not been taken
+     */
+    public boolean isEmpty(){
+        return head == tail;
+    }
+
+    /**
+     * @return the number of messages dropped, newest or oldest
+     */
+    public int getDropped(){
+        return droppedNewest + droppedOldest;
+    }
+
+    /**
+     * @return the most messages that have been waiting at once
+     */
+    public int getHighWater(){
+        return highWater;
+    }
+}
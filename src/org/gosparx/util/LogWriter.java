@@ -1,14 +1,11 @@
 package org.gosparx.util;
 
 import com.sun.squawk.microedition.io.FileConnection;
-import edu.wpi.first.wpilibj.DriverStationLCD;
-import edu.wpi.first.wpilibj.image.ColorImage;
-import edu.wpi.first.wpilibj.image.NIVisionException;
-import edu.wpi.first.wpilibj.networktables2.util.List;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
 import javax.microedition.io.Connector;
 import org.gosparx.subsystem.GenericSubsystem;
 
@@ -19,28 +16,189 @@ import org.gosparx.subsystem.GenericSubsystem;
 
 public class LogWriter extends GenericSubsystem{
     private static LogWriter writer;
-    private final List messagesToLog;
     private FileConnection fileCon;
-    private FileConnection fileConConfig;
-    private OutputStream dos;
-    private DataOutputStream dosConfig;
-    private DataInputStream dis;
+    private BufferedLogFile logFile;
+    private FileConnection telemetryCon;
+    private BufferedLogFile telemetryFile;
     private final String configPath = "file:///loggingConfig.txt";
-    private final int MAX_LOGS = 5;
-    private String[] prevMessages  = new String[6];
-    private DriverStationLCD dsLCD = DriverStationLCD.getInstance();
-    private int toUse = 0;
-    
-    public static int LEVEL_DEBUG                                           = 0;
-    public static int LEVEL_ERROR                                           = 1;
-    
-    //VISION
-    private FileConnection photoConConfig;
-    private DataOutputStream dosPhotoConfig;
-    private DataInputStream disPhotoConfig;
-    private int visionConfigNumber;
-    public final String photoConfigPath = "//photoConfig.txt";
-    public final String photoPath = "file:///ShooterPictures//";
+
+    /**
+     * The {@link PersistentStore} keys of the last log sequence number and
+     * the last image number.
+     */
+    private static final String SEQUENCE_KEY = "log.sequence";
+
+    /**
+     * The sequence number of the log segment being written. Segments are
+     * named log&lt;sequence&gt;.bin and the number only ever goes up, across
+     * boots too.
+     */
+    private volatile int sequence = -1;
+
+    /**
+     * A segment is closed and the next one started when it reaches this many
+     * bytes. Set with "segmentSize=" in loggingConfig.txt.
+     */
+    private long segmentSize = 256 * 1024;
+
+    /**
+     * The oldest segments are deleted to keep all of them under this many
+     * bytes. Set with "logBudget=" in loggingConfig.txt.
+     */
+    private long spaceBudget = 8 * 1024 * 1024;
+
+    /**
+     * The sequence numbers and sizes of the segments on flash, oldest first.
+     * The last one is being written.
+     */
+    private final Vector segmentSequences = new Vector();
+    private final Vector segmentSizes = new Vector();
+
+    /**
+     * The {@link DriverStationSnapshot#getMode()} mode of the messages in the
+     * segment being written, or -1 before its first message.
+     */
+    private int segmentMode = -1;
+
+    /**
+     * The most {@link Telemetry} recorders.
+     */
+    private static final int MAX_TELEMETRY = 16;
+
+    /**
+     * Every Telemetry recorder, indexed by id.
+     */
+    private final Telemetry[] telemetry = new Telemetry[MAX_TELEMETRY];
+    private volatile int telemetryCount = 0;
+
+    /**
+     * If each recorder's channels have been written to the telemetry file.
+     */
+    private final boolean[] channelsWritten = new boolean[MAX_TELEMETRY];
+
+    /**
+     * The size in bytes of the log buffer.
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * The longest in microseconds a message may sit in the log buffer.
+     */
+    private static final long MAX_BUFFER_AGE = 500000;
+
+    /**
+     * The mode tag the last messages were logged in, so a mode change
+     * flushes the buffer.
+     */
+    private String lastModeTag = "";
+
+    /**
+     * Set by {@link #flush()}, cleared once the writer thread has flushed.
+     */
+    private volatile boolean flushRequested = false;
+
+    /**
+     * When a thread's ring is full the new message is dropped.
+     */
+    public static final int OVERFLOW_DROP_NEWEST = 0;
+
+    /**
+     * When a thread's ring is full the oldest message is written over.
+     */
+    public static final int OVERFLOW_DROP_OLDEST = 1;
+
+    /**
+     * When a thread's ring is full the thread waits up to the block timeout
+     * for room, then drops the new message. Subsystem threads never wait and
+     * drop the new message straight away.
+     */
+    public static final int OVERFLOW_BLOCK = 2;
+
+    /**
+     * The most threads that get their own ring. Any more share one ring
+     * behind a lock.
+     */
+    private static final int MAX_PRODUCERS = 16;
+
+    /**
+     * One ring for each thread that has logged.
+     */
+    private final LogRing[] rings = new LogRing[MAX_PRODUCERS];
+
+    /**
+     * The number of rings.
+     */
+    private volatile int ringCount = 0;
+
+    /**
+     * Used by threads that could not get a ring of their own.
+     */
+    private final LogRing sharedRing = new LogRing(null);
+
+    /**
+     * Formats each record for the console without allocating.
+     */
+    private final LogFormatter formatter = new LogFormatter();
+
+    /**
+     * Filled in by the writer thread with each message it takes.
+     */
+    private final LogMessage nextMessage = new LogMessage();
+
+    private volatile int overflowPolicy = OVERFLOW_DROP_OLDEST;
+    private volatile int blockTimeout = 10;
+
+    public static int LEVEL_DEBUG                                           = LogFormatter.LEVEL_DEBUG;
+    public static int LEVEL_ERROR                                           = LogFormatter.LEVEL_ERROR;
+
+    /**
+     * The level threshold that logs nothing.
+     */
+    public static final int LEVEL_OFF = LogFormatter.LEVEL_ERROR + 1;
+
+    private static final int MAX_SUBSYSTEMS = 64;
+    private static final int MAX_TEMPLATES = 256;
+
+    /**
+     * The subsystem names, indexed by id.
+     */
+    private final String[] subsystemNames = new String[MAX_SUBSYSTEMS];
+    private volatile int subsystemCount = 0;
+
+    /**
+     * The lowest level logged for each subsystem, indexed by id.
+     */
+    private final int[] thresholds = new int[MAX_SUBSYSTEMS];
+
+    /**
+     * Every {@link LogLimit}, so settings can be applied to them.
+     */
+    private final Vector limits = new Vector();
+
+    /**
+     * The settings read from loggingConfig.txt, by key.
+     */
+    private final Hashtable settings = new Hashtable();
+
+    /**
+     * The number of messages not logged because of a subsystem's threshold.
+     */
+    private int filtered = 0;
+
+    /**
+     * The message templates and their placeholder types, indexed by id.
+     * Template 0 is {@link LogFormatter#TEXT_TEMPLATE}.
+     */
+    private final String[] templates = new String[MAX_TEMPLATES];
+    private final int[][] templateTypes = new int[MAX_TEMPLATES][];
+    private volatile int templateCount = 0;
+
+    /**
+     * The number of subsystems and templates written to the log file so far.
+     */
+    private int subsystemsWritten = 0;
+    private int templatesWritten = 0;
+
     /**
      * Returns the singleton LogWriter
      * @return the singleton LogWriter
@@ -56,190 +214,784 @@ public class LogWriter extends GenericSubsystem{
      */
     private LogWriter(){
         super("LogWriter", Thread.NORM_PRIORITY);
-        messagesToLog = new List();
+        addTemplate(LogFormatter.TEXT_TEMPLATE);
     }
+
     /**
-     * Logs the message to the file
-     * @param message The message to log
+     * @param name - a subsystem name
+     * @return the id to log the subsystem's messages with
      */
-    public void log(String info, String message, int level){
-        synchronized(messagesToLog){
-            messagesToLog.add(new LogMessage(level, info, message));
-            messagesToLog.notify();
+    public synchronized int addSubsystem(String name){
+        for(int i = 0; i < subsystemCount; i++){
+            if(subsystemNames[i].equals(name)){
+                return i;
+            }
         }
+        if(subsystemCount >= MAX_SUBSYSTEMS){
+            System.out.println("Too many log subsystems, logging " + name + " as " + subsystemNames[0]);
+            return 0;
+        }
+        subsystemNames[subsystemCount] = name;
+        thresholds[subsystemCount] = thresholdFor(name);
+        return subsystemCount++;
     }
+
     /**
-     * Setups up the config file if it does not exist and sets the first log to
-     * use as log0.txt. Otherwise it reads the last used logs and increments it
-     * by 1. It wraps around.
+     * @param name - a subsystem name
+     * @return the threshold set for it in loggingConfig.txt, or the default
      */
-    public void init() {
-        String emptyString = "";
-        prevMessages[0] = emptyString;
-        prevMessages[1] = emptyString;
-        prevMessages[2] = emptyString;
-        prevMessages[3] = emptyString;
-        prevMessages[4] = emptyString;
-        prevMessages[5] = emptyString;
-        try {
-            try {
-                fileConConfig = (FileConnection)Connector.open(configPath, Connector.READ_WRITE);
-                dis = fileConConfig.openDataInputStream();
-                dosConfig = fileConConfig.openDataOutputStream();
-                char lastUsedChar = (char) dis.read();
-                String toParse = "" + lastUsedChar;
-                toUse = Integer.parseInt(toParse) + 1;
-                toUse %= MAX_LOGS;
-                String toWrite = "" + toUse;
-                try{
-                    fileConConfig.delete();
-                    fileConConfig.create();
-                    dosConfig = fileConConfig.openDataOutputStream();
-                    dosConfig.write(toWrite.getBytes());
-                    dosConfig.close();
-                    dis.close();
-                    fileConConfig.close();
-                }catch(IOException e){
+    private int thresholdFor(String name){
+        String level = (String)settings.get("level." + name.trim());
+        if(level == null){
+            level = (String)settings.get("level.default");
+        }
+        if("error".equals(level)){
+            return LEVEL_ERROR;
+        }else if("off".equals(level)){
+            return LEVEL_OFF;
+        }
+        return LEVEL_DEBUG;
+    }
+
+    /**
+     * @param subsystem - the id from {@link #addSubsystem(String)}
+     * @param level - the level of a message
+     * @return if the subsystem's threshold lets the message through
+     */
+    public boolean isLogged(int subsystem, int level){
+        return level >= thresholds[subsystem];
+    }
+
+    /**
+     * Counts a message that was not logged because of its subsystem's
+     * threshold.
+     */
+    void countFiltered(){
+        filtered++;
+    }
+
+    /**
+     * Makes a rate limit, or returns the one that already has the name. The
+     * rate and burst can be changed in loggingConfig.txt with a line like
+     * "rate.Drives.turn=2,5".
+     * @param name - the name of the limit
+     * @param rate - the messages allowed per second
+     * @param burst - the most messages allowed at once
+     * @return the limit
+     */
+    public synchronized LogLimit addLimit(String name, double rate, int burst){
+        for(int i = 0; i < limits.size(); i++){
+            LogLimit limit = (LogLimit)limits.elementAt(i);
+            if(limit.getName().equals(name)){
+                return limit;
+            }
+        }
+        LogLimit limit = new LogLimit(name, rate, burst);
+        applyRate(limit);
+        limits.addElement(limit);
+        return limit;
+    }
+
+    /**
+     * Sets a limit's rate and burst from loggingConfig.txt, if it has them.
+     * @param limit - the limit
+     */
+    private void applyRate(LogLimit limit){
+        String value = (String)settings.get("rate." + limit.getName());
+        if(value == null){
+            return;
+        }
+        try{
+            int comma = value.indexOf(',');
+            if(comma == -1){
+                double rate = Double.parseDouble(value);
+                limit.set(rate, (int)Math.ceil(rate));
+            }else{
+                limit.set(Double.parseDouble(value.substring(0, comma).trim()),
+                        Integer.parseInt(value.substring(comma + 1).trim()));
+            }
+        }catch(NumberFormatException e){
+            System.out.println("Bad loggingConfig.txt rate for " + limit.getName() + ": " + value);
+        }
+    }
+
+    /**
+     * Reads the settings in loggingConfig.txt. Each is a "key=value" line;
+     * lines starting with '#' are ignored. The keys are:
+     * <ul>
+     * <li>level.default, level.&lt;subsystem&gt; - "debug", "error" or "off"</li>
+     * <li>rate.&lt;limit&gt; - "messages per second,burst"</li>
+     * </ul>
+     * @param text - the settings
+     */
+    private synchronized void loadSettings(String text){
+        int start = 0;
+        while(start < text.length()){
+            int end = text.indexOf('\n', start);
+            if(end == -1){
+                end = text.length();
+            }
+            String line = text.substring(start, end).trim();
+            start = end + 1;
+            int equals = line.indexOf('=');
+            if(line.length() == 0 || line.charAt(0) == '#' || equals == -1){
+                continue;
+            }
+            settings.put(line.substring(0, equals).trim(), line.substring(equals + 1).trim());
+        }
+        for(int i = 0; i < subsystemCount; i++){
+            thresholds[i] = thresholdFor(subsystemNames[i]);
+        }
+        for(int i = 0; i < limits.size(); i++){
+            applyRate((LogLimit)limits.elementAt(i));
+        }
+    }
+
+    /**
+     * Registers a message template. See {@link LogFormatter} for the
+     * placeholders. Register templates once, not every time they are logged.
+     * @param template - the message template
+     * @return the id to log the template with
+     */
+    public synchronized int addTemplate(String template){
+        for(int i = 0; i < templateCount; i++){
+            if(templates[i].equals(template)){
+                return i;
+            }
+        }
+        if(templateCount >= MAX_TEMPLATES){
+            System.out.println("Too many log templates, not logging " + template);
+            return 0;
+        }
+        templates[templateCount] = template;
+        templateTypes[templateCount] = LogFormatter.argTypes(template);
+        return templateCount++;
+    }
+
+    /**
+     * Logs a record. It goes into the calling thread's own ring, so logging
+     * does not lock or format anything. What happens when the ring is full
+     * depends on the overflow policy.
+     * @param level - LEVEL_DEBUG or LEVEL_ERROR
+     * @param subsystem - the id from {@link #addSubsystem(String)}
+     * @param mode - the {@link DriverStationSnapshot#getMode()} mode id
+     * @param time - the match time in ten thousandths of a second
+     * @param template - the id from {@link #addTemplate(String)}
+     * @param text - the text for a "{s}" placeholder, or null
+     * @param argCount - the number of numeric arguments, at most
+     * {@link LogMessage#MAX_ARGS}
+     */
+    public void log(int level, int subsystem, int mode, int time, int template,
+            String text, int argCount, double arg0, double arg1, double arg2, double arg3){
+        LogRing ring = ringFor(Thread.currentThread());
+        if(ring == null){
+            synchronized(sharedRing){
+                post(sharedRing, level, subsystem, mode, time, template, text, argCount, arg0, arg1, arg2, arg3);
+            }
+        }else{
+            post(ring, level, subsystem, mode, time, template, text, argCount, arg0, arg1, arg2, arg3);
+        }
+    }
+
+    /**
+     * Posts a record to a ring following the overflow policy.
+     */
+    private void post(LogRing ring, int level, int subsystem, int mode, int time, int template,
+            String text, int argCount, double arg0, double arg1, double arg2, double arg3){
+        int policy = overflowPolicy;
+        if(policy == OVERFLOW_DROP_OLDEST){
+            ring.overwrite(level, subsystem, mode, time, template, text, argCount, arg0, arg1, arg2, arg3);
+            return;
+        }
+        if(ring.offer(level, subsystem, mode, time, template, text, argCount, arg0, arg1, arg2, arg3)){
+            return;
+        }
+        if(policy == OVERFLOW_BLOCK && !(Thread.currentThread() instanceof GenericSubsystem)){
+            long giveUp = System.currentTimeMillis() + blockTimeout;
+            while(System.currentTimeMillis() < giveUp){
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ex) {
+                    break;
                 }
-            }catch(IOException e){
-                if(fileConConfig.fileSize() != 0){
-                fileConConfig.create();
-                dosConfig = fileConConfig.openDataOutputStream();
-                String toWrite = "" + toUse;
-                dosConfig.write(toWrite.getBytes());
-                dosConfig.close();
+                if(ring.offer(level, subsystem, mode, time, template, text, argCount, arg0, arg1, arg2, arg3)){
+                    return;
                 }
             }
-            
-            //VISION
-            photoConConfig = (FileConnection)Connector.open(photoPath + photoConfigPath);
-            if(!photoConConfig.exists()){
-                photoConConfig.create();
-                dosPhotoConfig = photoConConfig.openDataOutputStream();
-                dosPhotoConfig.write((""+0).getBytes());
-                dosPhotoConfig.close();
-            }
-            disPhotoConfig = photoConConfig.openDataInputStream();
-            char lastUsedChar = (char) disPhotoConfig.read();
-            String currentNumber = "" + lastUsedChar;
-            visionConfigNumber = Integer.parseInt(currentNumber);
-            disPhotoConfig.close();
-            photoConConfig.close();
-
-            fileCon = (FileConnection)Connector.open("file:///log" + toUse + ".txt", Connector.READ_WRITE);
-            if(fileCon.exists()){
-                fileCon.delete();
-            }
-            fileCon.create();
-            fileCon.close();
-        } catch (IOException ex) {
         }
+        ring.dropNewest();
     }
-    
+
     /**
-     * Logs the first message to log in the queue every 20 ms
+     * @param producer - a thread logging a message
+     * @return the ring owned by that thread, or null if there are too many
+     * threads
      */
-    public void execute() throws Exception {
-        String message, info;
-        LogMessage logMessage;
-        int level;
-        synchronized(messagesToLog){
-        if(messagesToLog.isEmpty())
-            messagesToLog.wait();
-        logMessage = (LogMessage) messagesToLog.get(0);
-        message = logMessage.getMessage();
-        level = logMessage.getLevel();
-        info = logMessage.getInfo();
-        messagesToLog.remove(0);
-        }
-        String toWrite = info + message + "\n";
-        updateDiognosis(toWrite.getBytes());
-        System.out.print(toWrite);
-        if(level == LEVEL_ERROR){
-            prevMessages[0] = prevMessages[1];
-            prevMessages[1] = prevMessages[2];
-            prevMessages[2] = prevMessages[3];
-            prevMessages[3] = prevMessages[4];
-            prevMessages[4] = prevMessages[5];
-            prevMessages[5] = message;
-            dsLCD.println(DriverStationLCD.Line.kUser1, 1, prevMessages[0]);
-            dsLCD.println(DriverStationLCD.Line.kUser2, 1, prevMessages[1]);
-            dsLCD.println(DriverStationLCD.Line.kUser3, 1, prevMessages[2]);
-            dsLCD.println(DriverStationLCD.Line.kUser4, 1, prevMessages[3]);
-            dsLCD.println(DriverStationLCD.Line.kUser5, 1, prevMessages[4]);
-            dsLCD.println(DriverStationLCD.Line.kUser6, 1, prevMessages[5]);
-            dsLCD.updateLCD();
-        }
-        updateVisionConfig((""+visionConfigNumber).getBytes());//(""+visionConfigNumber).getBytes());
+    private LogRing ringFor(Thread producer){
+        int count = ringCount;
+        for(int i = 0; i < count; i++){
+            if(rings[i].getProducer() == producer){
+                return rings[i];
+            }
+        }
+        synchronized(rings){
+            for(int i = ringCount; i > count; i--){
+                if(rings[i - 1].getProducer() == producer){
+                    return rings[i - 1];
+                }
+            }
+            if(ringCount < MAX_PRODUCERS){
+                LogRing ring = new LogRing(producer);
+                rings[ringCount] = ring;
+                ringCount++;
+                return ring;
+            }
+            //Take over the ring of a thread that has finished, such as an
+            //init thread
+            for(int i = 0; i < ringCount; i++){
+                if(!rings[i].getProducer().isAlive() && rings[i].isEmpty()){
+                    rings[i].setProducer(producer);
+                    return rings[i];
+                }
+            }
+            return null;
+        }
     }
-    
-    private void updateDiognosis(byte[] write){
+
+    /**
+     * Sets what happens when a thread logs faster than the messages are
+     * written.
+     * @param policy - OVERFLOW_DROP_NEWEST, OVERFLOW_DROP_OLDEST or
+     * OVERFLOW_BLOCK
+     * @param timeoutMs - the longest in ms OVERFLOW_BLOCK waits for room
+     */
+    public void setOverflowPolicy(int policy, int timeoutMs){
+        blockTimeout = timeoutMs;
+        overflowPolicy = policy;
+    }
+
+    /**
+     * Registers a {@link Telemetry} recorder, so its blocks are written.
+     * @param recorder - the recorder
+     * @return its id, or -1 if there are too many
+     */
+    synchronized int addTelemetry(Telemetry recorder){
+        if(telemetryCount >= MAX_TELEMETRY){
+            System.out.println("Too many telemetry recorders, not writing " + recorder.getName());
+            return -1;
+        }
+        telemetry[telemetryCount] = recorder;
+        return telemetryCount++;
+    }
+
+    /**
+     * @return the sequence number of the log segment being written, or -1
+     * before the first one is opened
+     */
+    public int getSequence(){
+        return sequence;
+    }
+
+    /**
+     * @return the number of messages dropped because a ring was full
+     */
+    public int getDropped(){
+        int dropped = sharedRing.getDropped();
+        int count = ringCount;
+        for(int i = 0; i < count; i++){
+            dropped += rings[i].getDropped();
+        }
+        return dropped;
+    }
+
+    /**
+     * @return the most messages that have been waiting at once in any ring,
+     * out of {@link LogRing#SIZE}
+     */
+    public int getHighWater(){
+        int highWater = sharedRing.getHighWater();
+        int count = ringCount;
+        for(int i = 0; i < count; i++){
+            highWater = Math.max(highWater, rings[i].getHighWater());
+        }
+        return highWater;
+    }
+    /**
+     * Reads loggingConfig.txt and starts a new log segment with the next
+     * sequence number.
+     */
+    public void init() {
+        //GenericSubsystem cannot make this one, the Logger would create a
+        //second LogWriter while the first was being constructed
+        log = new Logger("LogWriter");
         try {
-            fileCon = (FileConnection)Connector.open("file:///log" + toUse + ".txt", Connector.READ_WRITE);
-            dos = fileCon.openOutputStream(2);
-            dos.write(write);
+            readConfig();
         } catch (IOException ex) {
             ex.printStackTrace();
+        }
+        try {
+            findSegments();
+            openSegment();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads the settings from loggingConfig.txt and the last sequence number
+     * from the {@link PersistentStore}. The robot no longer writes
+     * loggingConfig.txt. If its first line is a number, it is the sequence
+     * number older code kept there, used until the store has one.
+     */
+    private void readConfig() throws IOException {
+        StringBuffer config = new StringBuffer();
+        FileConnection fileConConfig = (FileConnection)Connector.open(configPath, Connector.READ);
+        try{
+            if(fileConConfig.exists()){
+                DataInputStream dis = fileConConfig.openDataInputStream();
+                try{
+                    for(int c = dis.read(); c != -1; c = dis.read()){
+                        config.append((char)c);
+                    }
+                }finally{
+                    dis.close();
+                }
+            }
         }finally{
-            try {
-                dos.close();
+            fileConConfig.close();
+        }
+        String text = config.toString();
+        int newLine = text.indexOf('\n');
+        int oldSequence;
+        try{
+            oldSequence = Integer.parseInt((newLine == -1 ? text : text.substring(0, newLine)).trim());
+        }catch(NumberFormatException e){
+            oldSequence = -1;
+        }
+        sequence = PersistentStore.getInstance().getInt(SEQUENCE_KEY, oldSequence);
+        //The old number has no '=' so it is not read as a setting
+        loadSettings(text);
+        segmentSize = longSetting("segmentSize", segmentSize);
+        spaceBudget = longSetting("logBudget", spaceBudget);
+    }
+
+    /**
+     * @param key - a setting
+     * @param otherwise - returned if the setting is missing or not a number
+     * @return the setting
+     */
+    long longSetting(String key, long otherwise){
+        String value = (String)settings.get(key);
+        if(value != null){
+            try{
+                return Long.parseLong(value);
+            }catch(NumberFormatException e){
+                System.out.println("Bad loggingConfig.txt " + key + ": " + value);
+            }
+        }
+        return otherwise;
+    }
+
+    /**
+     * @param key - a setting
+     * @param otherwise - returned if the setting is missing
+     * @return the setting
+     */
+    String stringSetting(String key, String otherwise){
+        String value = (String)settings.get(key);
+        return value == null ? otherwise : value;
+    }
+
+    /**
+     * Finds the segments already on flash, so the oldest can be deleted when
+     * they use too much space. A sequence number lost with the
+     * {@link PersistentStore} is recovered from the newest segment.
+     */
+    private void findSegments() throws IOException {
+        FileConnection root = (FileConnection)Connector.open("file:///", Connector.READ);
+        try{
+            Enumeration names = root.list();
+            while(names.hasMoreElements()){
+                String name = (String)names.nextElement();
+                if(!name.startsWith("log") || !name.endsWith(".bin")){
+                    continue;
+                }
+                int found;
+                try{
+                    found = Integer.parseInt(name.substring(3, name.length() - 4));
+                }catch(NumberFormatException e){
+                    continue;
+                }
+                long size = fileSize("file:///" + name) + fileSize("file:///tele" + found + ".bin");
+                //Keep the list in order, oldest first
+                int index = segmentSequences.size();
+                while(index > 0 && ((Integer)segmentSequences.elementAt(index - 1)).intValue() > found){
+                    index--;
+                }
+                segmentSequences.insertElementAt(new Integer(found), index);
+                segmentSizes.insertElementAt(new Long(size), index);
+                sequence = Math.max(sequence, found);
+            }
+        }finally{
+            root.close();
+        }
+    }
+
+    /**
+     * Starts the next segment, deleting the oldest ones if there is not room
+     * for it in the space budget.
+     */
+    private void openSegment() throws IOException {
+        sequence++;
+        PersistentStore.getInstance().putInt(SEQUENCE_KEY, sequence);
+        deleteOldSegments();
+        fileCon = (FileConnection)Connector.open("file:///log" + sequence + ".bin", Connector.READ_WRITE);
+        if(fileCon.exists()){
+            fileCon.delete();
+        }
+        fileCon.create();
+        logFile = new BufferedLogFile(fileCon.openOutputStream(), BUFFER_SIZE, MAX_BUFFER_AGE);
+        telemetryCon = (FileConnection)Connector.open("file:///tele" + sequence + ".bin", Connector.READ_WRITE);
+        if(telemetryCon.exists()){
+            telemetryCon.delete();
+        }
+        telemetryCon.create();
+        telemetryFile = new BufferedLogFile(telemetryCon.openOutputStream(), BUFFER_SIZE, MAX_BUFFER_AGE);
+        segmentSequences.addElement(new Integer(sequence));
+        segmentSizes.addElement(new Long(0));
+        segmentMode = -1;
+        for(int i = 0; i < MAX_TELEMETRY; i++){
+            channelsWritten[i] = false;
+        }
+        //Every segment defines its own subsystems and templates so it can be
+        //decoded on its own
+        subsystemsWritten = 0;
+        templatesWritten = 0;
+        logFile.startRecord(Clock.get().micros());
+        for(int i = 0; i < LogFormatter.LOG_MAGIC.length(); i++){
+            logFile.writeByte(LogFormatter.LOG_MAGIC.charAt(i));
+        }
+        logFile.writeByte(LogFormatter.LOG_VERSION);
+        telemetryFile.startRecord(Clock.get().micros());
+        for(int i = 0; i < TelemetryBlock.TELEMETRY_MAGIC.length(); i++){
+            telemetryFile.writeByte(TelemetryBlock.TELEMETRY_MAGIC.charAt(i));
+        }
+        telemetryFile.writeByte(TelemetryBlock.TELEMETRY_VERSION);
+    }
+
+    /**
+     * Closes the current segment and starts the next one.
+     */
+    private void rotate() throws IOException {
+        BufferedLogFile closing = logFile;
+        BufferedLogFile closingTelemetry = telemetryFile;
+        logFile = null;
+        telemetryFile = null;
+        try{
+            try{
+                closing.close();
+            }finally{
                 fileCon.close();
-            } catch (IOException ex) {
-                ex.printStackTrace();
+            }
+        }finally{
+            try{
+                closingTelemetry.close();
+            }finally{
+                telemetryCon.close();
             }
         }
+        segmentSizes.setElementAt(new Long(closing.getBytesWritten() + closingTelemetry.getBytesWritten()),
+                segmentSizes.size() - 1);
+        openSegment();
     }
-    
-    private void updateVisionConfig(byte[] currentImage){
-        try {
-            photoConConfig = (FileConnection)Connector.open(photoPath + photoConfigPath);
-            dosPhotoConfig = photoConConfig.openDataOutputStream();
-            dosPhotoConfig.write(currentImage);
-        } catch (IOException ex) {
-            ex.printStackTrace();
+
+    /**
+     * @return if the log and telemetry of the segment being written have
+     * reached the segment size
+     */
+    private boolean segmentFull(){
+        return logFile.getSize() + telemetryFile.getSize() >= segmentSize;
+    }
+
+    /**
+     * Deletes the oldest segments until the rest and a full new segment fit
+     * in the space budget. The {@link FlightRecorder} dumps written during a
+     * segment go with it.
+     */
+    private void deleteOldSegments(){
+        long total = segmentSize;
+        for(int i = 0; i < segmentSizes.size(); i++){
+            total += ((Long)segmentSizes.elementAt(i)).longValue();
+        }
+        while(total > spaceBudget && !segmentSequences.isEmpty()){
+            int oldest = ((Integer)segmentSequences.elementAt(0)).intValue();
+            try{
+                deleteFile("file:///log" + oldest + ".bin");
+                deleteFile("file:///tele" + oldest + ".bin");
+                for(int i = 0; i < FlightRecorder.MAX_DUMPS; i++){
+                    deleteFile("file:///crash" + oldest + "_" + i + ".txt");
+                }
+            }catch(IOException e){
+                e.printStackTrace();
+                return;
+            }
+            total -= ((Long)segmentSizes.elementAt(0)).longValue();
+            segmentSequences.removeElementAt(0);
+            segmentSizes.removeElementAt(0);
+        }
+    }
+
+    /**
+     * @param path - a file
+     * @return the size of the file in bytes, or 0 if it does not exist
+     */
+    private static long fileSize(String path) throws IOException {
+        FileConnection file = (FileConnection)Connector.open(path, Connector.READ);
+        try{
+            return file.exists() ? file.fileSize() : 0;
         }finally{
-            try {
-                dosPhotoConfig.close();
-                photoConConfig.close();
-            } catch (IOException ex) {
-                ex.printStackTrace();
+            file.close();
+        }
+    }
+
+    /**
+     * @param path - the file to delete, if it exists
+     */
+    private static void deleteFile(String path) throws IOException {
+        FileConnection file = (FileConnection)Connector.open(path, Connector.READ_WRITE);
+        try{
+            if(file.exists()){
+                file.delete();
             }
+        }finally{
+            file.close();
         }
     }
+
+    /**
+     * Asks the writer thread to write everything logged so far to the file.
+     * Call before the robot may be turned off.
+     */
+    public void flush(){
+        flushRequested = true;
+    }
     
-    private void increaseVisionFile(){
-        visionConfigNumber++;
-        if(visionConfigNumber >= 50){
-            visionConfigNumber = 51;
+    /**
+     * Logs every waiting message to the buffer, oldest first across all the
+     * rings. The buffer is written to the file when it is full, when its
+     * oldest message is older than MAX_BUFFER_AGE, when the robot changes
+     * mode, or when {@link #flush()} is called.
+     */
+    public void execute() throws Exception {
+        int count = ringCount;
+        //Bounded so threads that never stop logging cannot keep the buffer
+        //from being flushed
+        for(int taken = 0; taken < (MAX_PRODUCERS + 1) * LogRing.SIZE; taken++){
+            LogRing next = sharedRing;
+            long nextTime = sharedRing.peekTime();
+            for(int i = 0; i < count; i++){
+                long time = rings[i].peekTime();
+                if(time < nextTime){
+                    next = rings[i];
+                    nextTime = time;
+                }
+            }
+            if(nextTime == Long.MAX_VALUE){
+                break;
+            }
+            if(next.take(nextMessage)){
+                writeMessage(nextMessage);
+            }
+        }
+        writeTelemetry();
+        PersistentStore.getInstance().writeLater();
+        String modeTag = ds.getModeTag();
+        boolean modeChanged = !modeTag.equals(lastModeTag);
+        lastModeTag = modeTag;
+        if(flushRequested || modeChanged){
+            //Partly filled telemetry blocks are written next loop
+            int recorders = telemetryCount;
+            for(int i = 0; i < recorders; i++){
+                telemetry[i].requestEnd();
+            }
+        }
+        if(logFile != null){
+            try{
+                if(flushRequested || modeChanged){
+                    flushRequested = false;
+                    logFile.flush();
+                    telemetryFile.flush();
+                }else{
+                    long now = Clock.get().micros();
+                    logFile.flushIfOld(now);
+                    telemetryFile.flushIfOld(now);
+                }
+            }catch(IOException ex){
+                ex.printStackTrace();
+            }
+        }else{
+            flushRequested = false;
         }
     }
-  
-    public void writeImage(ColorImage image) {
-        if (image != null) {
+
+    /**
+     * Writes every full {@link Telemetry} block to the telemetry file, after
+     * the channels of its recorder if they are not in this segment yet.
+     */
+    private void writeTelemetry(){
+        int recorders = telemetryCount;
+        for(int i = 0; i < recorders; i++){
+            Telemetry recorder = telemetry[i];
+            for(TelemetryBlock block = recorder.nextBlock(); block != null; block = recorder.nextBlock()){
+                if(telemetryFile != null){
+                    try{
+                        writeBlock(recorder, block);
+                        if(segmentFull()){
+                            rotate();
+                        }
+                    }catch(IOException ex){
+                        ex.printStackTrace();
+                    }
+                }
+                recorder.blockWritten();
+            }
+        }
+    }
+
+    /**
+     * @param recorder - the recorder the block is from
+     * @param block - the block to write
+     */
+    private void writeBlock(Telemetry recorder, TelemetryBlock block) throws IOException {
+        int id = recorder.getId();
+        telemetryFile.startRecord(Clock.get().micros());
+        if(!channelsWritten[id]){
+            channelsWritten[id] = true;
+            for(int i = 0; i < recorder.getChannelCount(); i++){
+                telemetryFile.writeByte(TelemetryBlock.RECORD_CHANNEL);
+                telemetryFile.writeByte(id);
+                telemetryFile.writeByte(i);
+                telemetryFile.writeByte(recorder.getChannelType(i));
+                telemetryFile.writeText(recorder.getName().trim() + "." + recorder.getChannelName(i));
+            }
+        }
+        telemetryFile.writeByte(TelemetryBlock.RECORD_BLOCK);
+        telemetryFile.writeByte(id);
+        block.write(telemetryFile);
+    }
+
+    /**
+     * Adds a record to the log buffer, prints it and posts errors to the
+     * {@link LcdDisplay}.
+     * @param record - the record to log
+     */
+    private void writeMessage(LogMessage record){
+        int template = Math.min(record.getTemplate(), templateCount - 1);
+        int subsystem = Math.min(record.getSubsystem(), subsystemCount - 1);
+        if(logFile != null){
             try {
-                image.write(photoPath + "Shot" + visionConfigNumber + ".png");
-                increaseVisionFile();
-            } catch (NIVisionException ex) {
-                ex.printStackTrace();
-            } finally {
-                try {
-                    image.free();
-                } catch (NIVisionException ex) {
-                    ex.printStackTrace();
+                if(record.getMode() != segmentMode){
+                    if(segmentMode != -1){
+                        //Each mode gets its own segment, starting with its
+                        //first message
+                        rotate();
+                    }
+                    segmentMode = record.getMode();
                 }
+                writeRecord(record, template, subsystem);
+                if(segmentFull()){
+                    rotate();
+                }
+            } catch (IOException ex) {
+                ex.printStackTrace();
             }
         }
+        formatter.startLine(record.getLevel(), record.getTime(), record.getMode(), subsystem < 0 ? "" : subsystemNames[subsystem]);
+        formatter.appendMessage(templates[template], record.getArgs(), record.getArgCount(), record.getText());
+        String message = record.getLevel() == LEVEL_ERROR ? formatter.getMessage() : null;
+        formatter.append('\n');
+        System.out.write(formatter.getLine(), 0, formatter.getLength());
+        if(record.getLevel() == LEVEL_ERROR){
+            LcdDisplay.getInstance().postError(message);
+        }
     }
 
+    /**
+     * Writes a message record to the log buffer, after the records for any
+     * subsystems and templates registered since the last one.
+     * @param record - the record to write
+     * @param template - the record's template id
+     * @param subsystem - the record's subsystem id, or -1 if none is
+     * registered
+     */
+    private void writeRecord(LogMessage record, int template, int subsystem) throws IOException {
+        logFile.startRecord(Clock.get().micros());
+        int subsystems = subsystemCount;
+        for(; subsystemsWritten < subsystems; subsystemsWritten++){
+            logFile.writeByte(LogFormatter.RECORD_SUBSYSTEM);
+            logFile.writeByte(subsystemsWritten);
+            logFile.writeText(subsystemNames[subsystemsWritten]);
+        }
+        int templateTotal = templateCount;
+        for(; templatesWritten < templateTotal; templatesWritten++){
+            logFile.writeByte(LogFormatter.RECORD_TEMPLATE);
+            logFile.writeShort(templatesWritten);
+            logFile.writeText(templates[templatesWritten]);
+        }
+        logFile.writeByte(LogFormatter.RECORD_MESSAGE);
+        logFile.writeShort(template);
+        logFile.writeByte(Math.max(subsystem, 0));
+        logFile.writeByte(record.getLevel() << 4 | record.getMode());
+        logFile.writeInt(record.getTime());
+        int[] types = templateTypes[template];
+        double[] args = record.getArgs();
+        int arg = 0;
+        for(int i = 0; i < types.length; i++){
+            if(types[i] == LogFormatter.ARG_TEXT){
+                logFile.writeText(record.getText() == null ? "null" : record.getText());
+                continue;
+            }
+            double value = arg < record.getArgCount() ? args[arg] : 0;
+            arg++;
+            if(types[i] == LogFormatter.ARG_INT){
+                logFile.writeInt((int)value);
+            }else if(types[i] == LogFormatter.ARG_BOOLEAN){
+                logFile.writeByte(value != 0 ? 1 : 0);
+            }else{
+                logFile.writeDouble(value);
+            }
+        }
+    }
+    
     public void liveWindow() {
        
     }
 
     public int sleepTime() {
-        return 50;
+        return 20;
+    }
+    
+    /**
+     * Logging does not need a steady period.
+     */
+    protected int periodPolicy() {
+        return PERIOD_FIXED_SLEEP;
     }
 
     public void logInfo() {
-        
+        log.logMessage("Log messages dropped: " + getDropped() + " High water: " + getHighWater() + "/" + LogRing.SIZE);
+        int suppressed = 0;
+        synchronized(this){
+            for(int i = 0; i < limits.size(); i++){
+                suppressed += ((LogLimit)limits.elementAt(i)).getTotalSuppressed();
+            }
+        }
+        log.logMessage("Log messages filtered by level: " + filtered + " Rate limited: " + suppressed);
+        int recorders = telemetryCount;
+        for(int i = 0; i < recorders; i++){
+            if(telemetry[i].getDropped() > 0){
+                log.logMessage("Telemetry samples dropped by " + telemetry[i].getName() + ": " + telemetry[i].getDropped());
+            }
+        }
     }
 }
@@ -1,7 +1,5 @@
 package org.gosparx.util;
 
-import edu.wpi.first.wpilibj.DriverStation;
-
 /**
  * @author Alex
  * @date 1/08/14
@@ -9,9 +7,28 @@ import edu.wpi.first.wpilibj.DriverStation;
 public class Logger {
     private LogWriter writer;
     private String subsystem;
-    private DriverStation ds = DriverStation.getInstance();
-    private static final int DIGITS_IN_TIME = 8;
-    private static final int PRECISION = 4;
+
+    /**
+     * The LogWriter's id for the subsystem.
+     */
+    private final int subsystemId;
+
+    /**
+     * The template id of plain String messages. The LogWriter registers
+     * {@link LogFormatter#TEXT_TEMPLATE} first.
+     */
+    private static final int TEXT_TEMPLATE = 0;
+
+    /**
+     * Logged in front of a message that got through a {@link LogLimit} after
+     * others were suppressed.
+     */
+    private static final int SUPPRESSED_TEMPLATE = template("suppressed {i} similar messages ({s})");
+
+    /**
+     * Match time in seconds is logged as an int in ten thousandths.
+     */
+    private static final int TIME_SCALE = 10000;
     
     public static final String SUB_DRIVES = "Drive";
     public static final String SUB_SHOOTER = "Shoot";
@@ -19,6 +36,13 @@ public class Logger {
     public static final String SUB_VISON = "Vison";
     public static final String SUB_CONTROLER = "Contr";
     public static final String SUB_AUTONOMOUS = "Auto ";
+    public static final String SUB_SCHEDULER = "Sched";
+    public static final String SUB_WATCHDOG = "Watch";
+    public static final String SUB_SENSORS = "Sensr";
+    public static final String SUB_DASHBOARD = "Dash ";
+    public static final String SUB_LCD = "LCD  ";
+    public static final String SUB_IMAGES = "Image";
+    public static final String SUB_INIT = "Init ";
     
     /**
      * Creates a new Logger to log
@@ -27,55 +51,123 @@ public class Logger {
     public Logger(String subsystem){
         this.subsystem = subsystem;
         writer = LogWriter.getInstance();
+        subsystemId = writer.addSubsystem(subsystem);
+    }
+
+    /**
+     * Registers a message template to log numbers with, without building a
+     * String. Put a "{}" in the template for each double argument, "{i}" for
+     * a whole number and "{b}" for a boolean (non zero is true). Call once
+     * and keep the id, ie. in a static final field.
+     * @param template the message with placeholders
+     * @return the template id
+     */
+    public static int template(String template){
+        return LogWriter.getInstance().addTemplate(template);
     }
     
     /**
-     * Logs a message in the following format: 
-     * "[Time into the match] {Current mode} Subsystem: message"
-     * followed by a new line
-     * @param message the desired message to log
+     * Makes a rate limit for one call site, which can be changed in
+     * loggingConfig.txt. Call once and keep it.
+     * @param name the name of the limit, ie. "Drives.turn"
+     * @param perSecond the messages allowed per second
+     * @param burst the most messages allowed at once
+     * @return the limit
      */
-    public void logMessage(String message){
-        String mode;
-        if(ds.isAutonomous() && ds.isEnabled()){
-            mode = "Aut";
-        }else if(ds.isOperatorControl() && ds.isEnabled()){
-            mode = "Tel";
-        }else{
-            mode = "Dis";
+    public LogLimit limit(String name, double perSecond, int burst){
+        return writer.addLimit(name, perSecond, burst);
+    }
+
+    /**
+     * Check this before reading sensors or building Strings only needed for
+     * debug messages.
+     * @return if debug messages from this Logger are logged
+     */
+    public boolean isLogged(){
+        return writer.isLogged(subsystemId, LogWriter.LEVEL_DEBUG);
+    }
+
+    /**
+     * Checks a call site's rate limit before logging, so suppressed messages
+     * are not even built:
+     * <pre>if(log.allow(turnLimit)){ log.logMessage(...); }</pre>
+     * The first message through after some were suppressed is preceded by
+     * "suppressed n similar messages".
+     * @param limit the call site's limit
+     * @return if the message may be logged
+     */
+    public boolean allow(LogLimit limit){
+        if(!isLogged()){
+            return false;
         }
-        double time = ds.getMatchTime();
-        time *= com.sun.squawk.util.MathUtils.pow(10, PRECISION);
-        int timeInt = (int)time;
-        String timeToFormat = "" + timeInt;
-        String timeFormatted = timeToFormat;
-        if(timeToFormat.length()<= DIGITS_IN_TIME) {
-            timeFormatted = "0000000000000000".substring(0, DIGITS_IN_TIME - timeToFormat.length()) + timeInt;
+        if(!limit.tryAcquire(Clock.get().micros())){
+            return false;
         }
-        timeFormatted = timeFormatted.substring(0,timeFormatted.length() - PRECISION) + "." + timeFormatted.substring(timeFormatted.length() - PRECISION);
-        String info = "(DEBUG)" + "[" + timeFormatted + "] {" + mode + "} " + subsystem + ": ";
-        writer.log(info, message, LogWriter.LEVEL_DEBUG);
+        int suppressed = limit.takeSuppressed();
+        if(suppressed > 0){
+            log(LogWriter.LEVEL_DEBUG, SUPPRESSED_TEMPLATE, limit.getName(), 1, suppressed, 0, 0, 0);
+        }
+        return true;
+    }
+    
+    /**
+     * Logs a message. The LogWriter puts
+     * "[Time into the match] {Current mode} Subsystem: " in front of it when
+     * it is printed or decoded.
+     * @param message the desired message to log
+     */
+    public void logMessage(String message){
+        log(LogWriter.LEVEL_DEBUG, TEXT_TEMPLATE, message, 0, 0, 0, 0, 0);
     }
     
     public void logError(String message){
-        String mode;
-        if(ds.isAutonomous() && ds.isEnabled()){
-            mode = "Aut";
-        }else if(ds.isOperatorControl() && ds.isEnabled()){
-            mode = "Tel";
-        }else{
-            mode = "Dis";
-        }
-        double time = ds.getMatchTime();
-        time *= com.sun.squawk.util.MathUtils.pow(10, PRECISION);
-        int timeInt = (int)time;
-        String timeToFormat = "" + timeInt;
-        String timeFormatted = timeToFormat;
-        if(timeToFormat.length()<= DIGITS_IN_TIME) {
-            timeFormatted = "0000000000000000".substring(0, DIGITS_IN_TIME - timeToFormat.length()) + timeInt;
+        log(LogWriter.LEVEL_ERROR, TEXT_TEMPLATE, message, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Logs a message from a template registered with
+     * {@link #template(String)}.
+     * @param template the template id
+     * @param arg0 the first argument
+     */
+    public void logMessage(int template, double arg0){
+        log(LogWriter.LEVEL_DEBUG, template, null, 1, arg0, 0, 0, 0);
+    }
+
+    public void logMessage(int template, double arg0, double arg1){
+        log(LogWriter.LEVEL_DEBUG, template, null, 2, arg0, arg1, 0, 0);
+    }
+
+    public void logMessage(int template, double arg0, double arg1, double arg2){
+        log(LogWriter.LEVEL_DEBUG, template, null, 3, arg0, arg1, arg2, 0);
+    }
+
+    public void logMessage(int template, double arg0, double arg1, double arg2, double arg3){
+        log(LogWriter.LEVEL_DEBUG, template, null, 4, arg0, arg1, arg2, arg3);
+    }
+
+    public void logError(int template, double arg0){
+        log(LogWriter.LEVEL_ERROR, template, null, 1, arg0, 0, 0, 0);
+    }
+
+    public void logError(int template, double arg0, double arg1){
+        log(LogWriter.LEVEL_ERROR, template, null, 2, arg0, arg1, 0, 0);
+    }
+
+    /**
+     * Hands a record to the LogWriter with the match time and mode of the
+     * current snapshot, unless it is below the subsystem's threshold. Nothing
+     * is formatted or allocated here; the caller only pays for a few stores
+     * into its ring slot.
+     */
+    private void log(int level, int template, String text, int argCount,
+            double arg0, double arg1, double arg2, double arg3){
+        if(!writer.isLogged(subsystemId, level)){
+            writer.countFiltered();
+            return;
         }
-        timeFormatted = timeFormatted.substring(0,timeFormatted.length() - PRECISION) + "." + timeFormatted.substring(timeFormatted.length() - PRECISION);
-        String info = "(ERROR)" + "[" + timeFormatted + "]{" + mode + "}" + subsystem + ": ";
-        writer.log(info, message, LogWriter.LEVEL_ERROR);;
+        DriverStationSnapshot ds = DriverStationSnapshot.get();
+        int time = (int)(ds.getMatchTime() * TIME_SCALE);
+        writer.log(level, subsystemId, ds.getMode(), time, template, text, argCount, arg0, arg1, arg2, arg3);
     }
-}
\ No newline at end of file
+}
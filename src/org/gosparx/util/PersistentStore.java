@@ -0,0 +1,413 @@
+package org.gosparx.util;
+
+import com.sun.squawk.microedition.io.FileConnection;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import javax.microedition.io.Connector;
+
+/**
+ * Named values that survive a reboot: counters such as the log sequence
+ * number and calibration values. Every put that changes a value appends one
+ * line to store.txt, so an update is never half applied:
+ * <pre>
+ * key=value*checksum
+ * </pre>
+ * A line cut short by a power loss fails its checksum and is skipped on the
+ * next boot, and the last good line for a key wins. Once the journal holds
+ * COMPACT_AFTER more lines than there are keys, it is rewritten to
+ * store.new with one line per key, which then replaces store.txt. If that is
+ * interrupted the complete file is still found on the next boot.
+ *
+ * Puts write to flash before they return, so call them when a value changes,
+ * not every loop. A control loop uses {@link #putDoubleLater} instead, which
+ * only hands the value to the LogWriter thread to write. Keys may not contain
+ * '=' and values may not contain line breaks.
+ */
+public class PersistentStore {
+
+    private static final String DIRECTORY = "file:///";
+    private static final String JOURNAL = "store.txt";
+    private static final String COMPACTED = "store.new";
+
+    /**
+     * The journal is compacted once it has this many more lines than keys.
+     */
+    private static final int COMPACT_AFTER = 64;
+
+    /**
+     * The only PersistentStore.
+     */
+    private static PersistentStore store;
+
+    /**
+     * The values, as the Strings they are written as, by key.
+     */
+    private final Hashtable values = new Hashtable();
+
+    /**
+     * The number of lines and bytes in the journal.
+     */
+    private int lines = 0;
+    private long journalSize = 0;
+
+    /**
+     * If the journal ends in the middle of a line, which the next line must
+     * not be appended to.
+     */
+    private boolean partialLine = false;
+
+    /**
+     * Set if a compaction failed after the old journal was deleted, so
+     * store.new has to be renamed before the next put.
+     */
+    private boolean compactionPending = false;
+
+    /**
+     * Values from putDoubleLater() not yet written, by key. Locked on its
+     * own, never while writing, so putDoubleLater() does not wait for flash.
+     */
+    private final Hashtable later = new Hashtable();
+
+    /**
+     * The number of lines skipped because their checksum was wrong.
+     */
+    private int badLines = 0;
+
+    /**
+     * @return the only PersistentStore, loaded from flash the first time
+     */
+    public static synchronized PersistentStore getInstance(){
+        if(store == null){
+            store = new PersistentStore();
+            store.load();
+        }
+        return store;
+    }
+
+    private PersistentStore(){
+    }
+
+    /**
+     * Reads the journal, finishing a compaction that was interrupted.
+     */
+    private void load(){
+        try{
+            finishCompaction();
+            FileConnection journal = (FileConnection)Connector.open(DIRECTORY + JOURNAL, Connector.READ);
+            try{
+                if(journal.exists()){
+                    DataInputStream in = journal.openDataInputStream();
+                    try{
+                        read(in);
+                    }finally{
+                        in.close();
+                    }
+                }
+            }finally{
+                journal.close();
+            }
+        }catch(IOException e){
+            System.out.println("Could not read " + JOURNAL + ": " + e.getMessage());
+        }
+        if(badLines > 0){
+            System.out.println(JOURNAL + ": skipped " + badLines + " damaged lines");
+        }
+    }
+
+    /**
+     * Cleans up after a compaction that did not finish.
+     */
+    private void finishCompaction() throws IOException {
+        FileConnection journal = (FileConnection)Connector.open(DIRECTORY + JOURNAL, Connector.READ_WRITE);
+        FileConnection compacted = (FileConnection)Connector.open(DIRECTORY + COMPACTED, Connector.READ_WRITE);
+        try{
+            if(!journal.exists() && compacted.exists()){
+                //The old journal was deleted, so the compacted one is complete
+                compacted.rename(JOURNAL);
+            }else if(compacted.exists()){
+                //Stopped while compacting, the old journal is whole
+                compacted.delete();
+            }
+        }finally{
+            compacted.close();
+            journal.close();
+        }
+        compactionPending = false;
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        StringBuffer line = new StringBuffer();
+        for(int c = in.read(); c != -1; c = in.read()){
+            journalSize++;
+            if(c == '\n'){
+                apply(line.toString());
+                line.setLength(0);
+            }else{
+                line.append((char)c);
+            }
+        }
+        if(line.length() > 0){
+            partialLine = true;
+            badLines++;
+        }
+    }
+
+    /**
+     * Applies one journal line if its checksum is right.
+     * @param line - the line, without its line break
+     */
+    private void apply(String line){
+        lines++;
+        int star = line.lastIndexOf('*');
+        int equals = line.indexOf('=');
+        if(star == -1 || equals == -1 || equals > star){
+            badLines++;
+            return;
+        }
+        String entry = line.substring(0, star);
+        if(!line.substring(star + 1).equals(checksum(entry))){
+            badLines++;
+            return;
+        }
+        values.put(entry.substring(0, equals), entry.substring(equals + 1));
+    }
+
+    /**
+     * @param entry - "key=value"
+     * @return the checksum written after it
+     */
+    private static String checksum(String entry){
+        return Integer.toString(entry.hashCode(), 16);
+    }
+
+    /**
+     * @param key - a key
+     * @param otherwise - returned if the key has no value
+     * @return the value
+     */
+    public synchronized String getString(String key, String otherwise){
+        String value = (String)values.get(key);
+        return value == null ? otherwise : value;
+    }
+
+    /**
+     * @param key - a key
+     * @param otherwise - returned if the key has no value or it is not an int
+     * @return the value
+     */
+    public synchronized int getInt(String key, int otherwise){
+        String value = (String)values.get(key);
+        if(value != null){
+            try{
+                return Integer.parseInt(value);
+            }catch(NumberFormatException e){
+                System.out.println(JOURNAL + ": " + key + " is not an int: " + value);
+            }
+        }
+        return otherwise;
+    }
+
+    /**
+     * @param key - a key
+     * @param otherwise - returned if the key has no value or it is not a
+     * number
+     * @return the value
+     */
+    public synchronized double getDouble(String key, double otherwise){
+        String value = (String)values.get(key);
+        if(value != null){
+            try{
+                return Double.parseDouble(value);
+            }catch(NumberFormatException e){
+                System.out.println(JOURNAL + ": " + key + " is not a number: " + value);
+            }
+        }
+        return otherwise;
+    }
+
+    /**
+     * @param key - a key
+     * @param otherwise - returned if the key has no value
+     * @return the value
+     */
+    public synchronized boolean getBoolean(String key, boolean otherwise){
+        String value = (String)values.get(key);
+        return value == null ? otherwise : value.equals("true");
+    }
+
+    /**
+     * @param key - a key
+     * @param value - the new value
+     * @return false if the value could not be written
+     */
+    public boolean putString(String key, String value){
+        return put(key, value);
+    }
+
+    /**
+     * @param key - a key
+     * @param value - the new value
+     * @return false if the value could not be written
+     */
+    public boolean putInt(String key, int value){
+        return put(key, String.valueOf(value));
+    }
+
+    /**
+     * @param key - a key
+     * @param value - the new value
+     * @return false if the value could not be written
+     */
+    public boolean putDouble(String key, double value){
+        return put(key, String.valueOf(value));
+    }
+
+    /**
+     * @param key - a key
+     * @param value - the new value
+     * @return false if the value could not be written
+     */
+    public boolean putBoolean(String key, boolean value){
+        return put(key, value ? "true" : "false");
+    }
+
+    /**
+     * Stores the value the next time the LogWriter runs, without waiting for
+     * it. A get returns the old value until then.
+     * @param key - a key
+     * @param value - the new value
+     */
+    public void putDoubleLater(String key, double value){
+        String text = String.valueOf(value);
+        synchronized(later){
+            later.put(key, text);
+        }
+    }
+
+    /**
+     * Writes the values from {@link #putDoubleLater}. LogWriter thread only.
+     */
+    void writeLater(){
+        String key;
+        String value;
+        while(true){
+            synchronized(later){
+                if(later.isEmpty()){
+                    return;
+                }
+                key = (String)later.keys().nextElement();
+                value = (String)later.remove(key);
+            }
+            put(key, value);
+        }
+    }
+
+    /**
+     * Appends the value to the journal if it changed, then compacts the
+     * journal if it has grown too long.
+     */
+    private synchronized boolean put(String key, String value){
+        if(value.equals(values.get(key))){
+            return true;
+        }
+        if(key.indexOf('=') != -1 || key.indexOf('\n') != -1 || value.indexOf('\n') != -1){
+            System.out.println("Can not store " + key + "=" + value);
+            return false;
+        }
+        String entry = key + "=" + value;
+        String line = (partialLine ? "\n" : "") + entry + "*" + checksum(entry) + "\n";
+        try{
+            if(compactionPending){
+                finishCompaction();
+            }
+            FileConnection journal = (FileConnection)Connector.open(DIRECTORY + JOURNAL, Connector.READ_WRITE);
+            try{
+                if(!journal.exists()){
+                    journal.create();
+                    journalSize = 0;
+                }
+                OutputStream out = journal.openOutputStream(journalSize);
+                try{
+                    out.write(line.getBytes());
+                }finally{
+                    out.close();
+                }
+            }finally{
+                journal.close();
+            }
+        }catch(IOException e){
+            System.out.println("Could not store " + key + ": " + e.getMessage());
+            return false;
+        }
+        journalSize += line.length();
+        partialLine = false;
+        lines++;
+        values.put(key, value);
+        if(lines > values.size() + COMPACT_AFTER){
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Rewrites the journal with one line per key.
+     */
+    private void compact(){
+        StringBuffer text = new StringBuffer();
+        Enumeration keys = values.keys();
+        while(keys.hasMoreElements()){
+            String key = (String)keys.nextElement();
+            String entry = key + "=" + values.get(key);
+            text.append(entry).append('*').append(checksum(entry)).append('\n');
+        }
+        boolean deleted = false;
+        try{
+            FileConnection compacted = (FileConnection)Connector.open(DIRECTORY + COMPACTED, Connector.READ_WRITE);
+            try{
+                if(compacted.exists()){
+                    compacted.delete();
+                }
+                compacted.create();
+                OutputStream out = compacted.openOutputStream();
+                try{
+                    out.write(text.toString().getBytes());
+                }finally{
+                    out.close();
+                }
+            }finally{
+                compacted.close();
+            }
+            FileConnection journal = (FileConnection)Connector.open(DIRECTORY + JOURNAL, Connector.READ_WRITE);
+            try{
+                journal.delete();
+                deleted = true;
+            }finally{
+                journal.close();
+            }
+            compacted = (FileConnection)Connector.open(DIRECTORY + COMPACTED, Connector.READ_WRITE);
+            try{
+                compacted.rename(JOURNAL);
+            }finally{
+                compacted.close();
+            }
+        }catch(IOException e){
+            //Either the journal is still whole and the next put tries again,
+            //or store.new is and the next put renames it
+            compactionPending = deleted;
+            System.out.println("Could not compact " + JOURNAL + ": " + e.getMessage());
+            return;
+        }
+        lines = values.size();
+        journalSize = text.length();
+    }
+
+    /**
+     * @return the number of journal lines skipped because they were damaged
+     */
+    public synchronized int getBadLines(){
+        return badLines;
+    }
+}
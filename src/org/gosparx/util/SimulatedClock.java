@@ -0,0 +1,46 @@
+package org.gosparx.util;
+
+/**
+ * A {@link Clock} that only moves when it is told to. Install it with
+ * {@link Clock#set(Clock)} to step time dependent code faster than real time.
+ */
+public class SimulatedClock extends Clock {
+
+    /**
+     * The current time in microseconds.
+     */
+    private long now;
+
+    /**
+     * Creates a new SimulatedClock starting at 0.
+     */
+    public SimulatedClock(){
+        now = 0;
+    }
+
+    public synchronized long micros(){
+        return now;
+    }
+
+    /**
+     * Moves the clock forward.
+     * @param seconds - the time in seconds to move forward. Negative values
+     * are ignored.
+     */
+    public synchronized void advance(double seconds){
+        if(seconds > 0){
+            now += (long)(seconds * 1000000);
+        }
+    }
+
+    /**
+     * Moves the clock forward.
+     * @param micros - the time in microseconds to move forward. Negative
+     * values are ignored.
+     */
+    public synchronized void advanceMicros(long micros){
+        if(micros > 0){
+            now += micros;
+        }
+    }
+}
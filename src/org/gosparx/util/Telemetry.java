@@ -0,0 +1,236 @@
+package org.gosparx.util;
+
+/**
+ * Records named channels of one subsystem every loop, for tuning. Add the
+ * channels in init(), then every loop set each channel and call
+ * {@link #sample()}. Samples go into preallocated {@link TelemetryBlock}s,
+ * and the LogWriter thread writes the full ones to tele&lt;sequence&gt;.bin
+ * next to the log segment. If the LogWriter falls BLOCKS blocks behind, new
+ * samples are dropped and counted.
+ *
+ * Only the owning subsystem's thread may add channels, set them or sample.
+ */
+public class Telemetry {
+
+    /**
+     * The most channels one recorder can have.
+     */
+    public static final int MAX_CHANNELS = 16;
+
+    /**
+     * The number of blocks, filled one after another.
+     */
+    private static final int BLOCKS = 4;
+
+    /**
+     * The name of the recorder, in front of each channel name.
+     */
+    private final String name;
+
+    /**
+     * The id of the recorder in the telemetry file.
+     */
+    private final int id;
+
+    private final String[] channelNames = new String[MAX_CHANNELS];
+    private final int[] types = new int[MAX_CHANNELS];
+    private int channelCount = 0;
+
+    /**
+     * The value of each channel in the current loop.
+     */
+    private final double[] current = new double[MAX_CHANNELS];
+
+    /**
+     * Made at the first sample, when the channels are known.
+     */
+    private TelemetryBlock[] blocks;
+
+    /**
+     * The number of blocks filled by the owner, and the number written by
+     * the LogWriter.
+     */
+    private volatile int filled = 0;
+    private volatile int written = 0;
+
+    /**
+     * Set by the LogWriter to have the block being filled handed over at the
+     * next sample, even though it is not full.
+     */
+    private volatile boolean endRequested = false;
+
+    /**
+     * The number of samples dropped because every block was full.
+     */
+    private int dropped = 0;
+
+    /**
+     * Makes a recorder and registers it with the LogWriter.
+     * @param name - the name of the subsystem
+     */
+    public Telemetry(String name){
+        this.name = name;
+        id = LogWriter.getInstance().addTelemetry(this);
+    }
+
+    /**
+     * @param channel - the channel name
+     * @return the channel index, used to set it
+     */
+    public int addDouble(String channel){
+        return add(channel, TelemetryBlock.TYPE_DOUBLE);
+    }
+
+    /**
+     * @param channel - the channel name
+     * @return the channel index, used to set it
+     */
+    public int addInt(String channel){
+        return add(channel, TelemetryBlock.TYPE_INT);
+    }
+
+    /**
+     * @param channel - the channel name
+     * @return the channel index, used to set it
+     */
+    public int addBoolean(String channel){
+        return add(channel, TelemetryBlock.TYPE_BOOLEAN);
+    }
+
+    /**
+     * Adds a channel. Channels can not be added after the first sample.
+     * @return the channel index, or -1 if it could not be added
+     */
+    private int add(String channel, int type){
+        if(blocks != null || channelCount >= MAX_CHANNELS){
+            System.out.println("Could not add telemetry channel " + name + "." + channel);
+            return -1;
+        }
+        channelNames[channelCount] = channel;
+        types[channelCount] = type;
+        return channelCount++;
+    }
+
+    /**
+     * @param channel - a channel from addDouble() or addInt()
+     * @param value - its value this loop
+     */
+    public void set(int channel, double value){
+        if(channel >= 0){
+            current[channel] = value;
+        }
+    }
+
+    /**
+     * @param channel - a channel from addBoolean()
+     * @param value - its value this loop
+     */
+    public void set(int channel, boolean value){
+        set(channel, value ? 1 : 0);
+    }
+
+    /**
+     * Records the value of every channel, with the current time.
+     */
+    public void sample(){
+        if(blocks == null){
+            blocks = new TelemetryBlock[BLOCKS];
+            for(int i = 0; i < BLOCKS; i++){
+                blocks[i] = new TelemetryBlock(types, channelCount);
+            }
+        }
+        int f = filled;
+        if(f - written >= BLOCKS){
+            dropped++;
+            return;
+        }
+        TelemetryBlock block = blocks[f % BLOCKS];
+        block.add(Clock.get().micros(), current);
+        if(block.isFull() || endRequested){
+            endRequested = false;
+            filled = f + 1;
+        }
+    }
+
+    /**
+     * Hands the samples so far to the LogWriter without waiting for the
+     * block to fill. Call when the subsystem stops sampling.
+     */
+    public void endBlock(){
+        int f = filled;
+        if(blocks != null && f - written < BLOCKS && blocks[f % BLOCKS].getRows() > 0){
+            filled = f + 1;
+        }
+    }
+
+    /**
+     * Asks for the block being filled to be handed over at the next sample.
+     * LogWriter thread only.
+     */
+    void requestEnd(){
+        endRequested = true;
+    }
+
+    /**
+     * LogWriter thread only.
+     * @return the oldest block not yet written, or null
+     */
+    TelemetryBlock nextBlock(){
+        int w = written;
+        return w == filled ? null : blocks[w % BLOCKS];
+    }
+
+    /**
+     * Empties the block from nextBlock() and gives it back to the owner.
+     * LogWriter thread only.
+     */
+    void blockWritten(){
+        int w = written;
+        blocks[w % BLOCKS].clear();
+        written = w + 1;
+    }
+
+    /**
+     * @return the id of the recorder in the telemetry file
+     */
+    int getId(){
+        return id;
+    }
+
+    /**
+     * @return the name of the recorder
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * @return the number of channels
+     */
+    public int getChannelCount(){
+        return channelCount;
+    }
+
+    /**
+     * @param channel - a channel index
+     * @return the name of the channel
+     */
+    public String getChannelName(int channel){
+        return channelNames[channel];
+    }
+
+    /**
+     * @param channel - a channel index
+     * @return the type of the channel, a TelemetryBlock TYPE_ constant
+     */
+    public int getChannelType(int channel){
+        return types[channel];
+    }
+
+    /**
+     * @return the number of samples dropped because every block was full
+     */
+    public int getDropped(){
+        return dropped;
+    }
+}
@@ -0,0 +1,245 @@
+package org.gosparx.util;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Up to ROWS telemetry samples of one {@link Telemetry} recorder, stored by
+ * column in preallocated arrays. A block is written as one record of the
+ * telemetry file, and the same class reads it back on the desktop.
+ *
+ * Each column is compressed on its own. Times and int and boolean channels
+ * are written as the difference from the row before, in as few bytes as
+ * that needs. A double is XORed with the one before it, and only the bytes
+ * of the result between its leading and trailing zero bytes are written, so
+ * a value that did not change takes one byte.
+ */
+public class TelemetryBlock {
+
+    public static final String TELEMETRY_MAGIC = "GSTEL";
+    public static final int TELEMETRY_VERSION = 1;
+
+    /**
+     * Record types. A channel record is recorder id, channel index, type and
+     * name. A block record is recorder id and then the block.
+     */
+    public static final int RECORD_CHANNEL = 'C';
+    public static final int RECORD_BLOCK = 'B';
+
+    public static final int TYPE_DOUBLE = 0;
+    public static final int TYPE_INT = 1;
+    public static final int TYPE_BOOLEAN = 2;
+
+    /**
+     * The most samples in one block.
+     */
+    public static final int ROWS = 64;
+
+    /**
+     * The type of each channel.
+     */
+    private final int[] types;
+    private final int channels;
+
+    /**
+     * The {@link Clock} time in microseconds of each sample.
+     */
+    private final long[] times = new long[ROWS];
+
+    /**
+     * The samples, one column of ROWS after another.
+     */
+    private final double[] values;
+
+    private int rows = 0;
+
+    /**
+     * @param types - the type of each channel
+     * @param channels - the number of channels
+     */
+    public TelemetryBlock(int[] types, int channels){
+        this.types = types;
+        this.channels = channels;
+        values = new double[channels * ROWS];
+    }
+
+    /**
+     * Adds a sample. Only call when the block is not full.
+     * @param time - the time in microseconds
+     * @param sample - the value of each channel
+     */
+    void add(long time, double[] sample){
+        times[rows] = time;
+        for(int i = 0; i < channels; i++){
+            values[i * ROWS + rows] = sample[i];
+        }
+        rows++;
+    }
+
+    /**
+     * Empties the block.
+     */
+    void clear(){
+        rows = 0;
+    }
+
+    /**
+     * @return if no more samples fit
+     */
+    public boolean isFull(){
+        return rows == ROWS;
+    }
+
+    /**
+     * @return the number of samples
+     */
+    public int getRows(){
+        return rows;
+    }
+
+    /**
+     * @param row - a sample
+     * @return the time of the sample in microseconds
+     */
+    public long getTime(int row){
+        return times[row];
+    }
+
+    /**
+     * @param channel - a channel
+     * @param row - a sample
+     * @return the channel's value in the sample. Booleans are 1 or 0.
+     */
+    public double getValue(int channel, int row){
+        return values[channel * ROWS + row];
+    }
+
+    /**
+     * Writes the samples, compressed.
+     * @param out - the telemetry file
+     * @throws IOException if the file could not be written
+     */
+    public void write(BufferedLogFile out) throws IOException {
+        out.writeByte(rows);
+        long last = 0;
+        for(int row = 0; row < rows; row++){
+            writeVarLong(out, times[row] - last);
+            last = times[row];
+        }
+        for(int i = 0; i < channels; i++){
+            int column = i * ROWS;
+            if(types[i] == TYPE_DOUBLE){
+                long lastBits = 0;
+                for(int row = 0; row < rows; row++){
+                    long bits = Double.doubleToLongBits(values[column + row]);
+                    writeXor(out, bits ^ lastBits);
+                    lastBits = bits;
+                }
+            }else{
+                long lastValue = 0;
+                for(int row = 0; row < rows; row++){
+                    long value = (long)values[column + row];
+                    writeVarLong(out, value - lastValue);
+                    lastValue = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads samples written by {@link #write(BufferedLogFile)}, replacing
+     * the ones in the block.
+     * @param in - the telemetry file, after the recorder id
+     * @throws IOException if the file could not be read
+     */
+    public void read(DataInputStream in) throws IOException {
+        rows = in.readUnsignedByte();
+        if(rows > ROWS){
+            throw new IOException("Block of " + rows + " rows");
+        }
+        long last = 0;
+        for(int row = 0; row < rows; row++){
+            last += readVarLong(in);
+            times[row] = last;
+        }
+        for(int i = 0; i < channels; i++){
+            int column = i * ROWS;
+            if(types[i] == TYPE_DOUBLE){
+                long lastBits = 0;
+                for(int row = 0; row < rows; row++){
+                    lastBits ^= readXor(in);
+                    values[column + row] = Double.longBitsToDouble(lastBits);
+                }
+            }else{
+                long lastValue = 0;
+                for(int row = 0; row < rows; row++){
+                    lastValue += readVarLong(in);
+                    values[column + row] = lastValue;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a number 7 bits at a time, low bits first, with the high bit of
+     * each byte set if more follow. The sign is moved to the lowest bit so
+     * small negative numbers stay short.
+     */
+    private static void writeVarLong(BufferedLogFile out, long value) throws IOException {
+        long bits = (value << 1) ^ (value >> 63);
+        while((bits & ~0x7FL) != 0){
+            out.writeByte((int)(bits & 0x7F) | 0x80);
+            bits >>>= 7;
+        }
+        out.writeByte((int)bits);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long bits = 0;
+        for(int shift = 0; shift < 64; shift += 7){
+            int b = in.readUnsignedByte();
+            bits |= (long)(b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                return (bits >>> 1) ^ -(bits & 1);
+            }
+        }
+        throw new IOException("Bad number in telemetry block");
+    }
+
+    /**
+     * Writes the number of leading and trailing zero bytes in one byte, then
+     * the bytes between them, high byte first.
+     */
+    private static void writeXor(BufferedLogFile out, long xor) throws IOException {
+        if(xor == 0){
+            out.writeByte(8 << 4);
+            return;
+        }
+        int leading = 0;
+        while((xor >>> (56 - leading * 8) & 0xFF) == 0){
+            leading++;
+        }
+        int trailing = 0;
+        while((xor >>> (trailing * 8) & 0xFF) == 0){
+            trailing++;
+        }
+        out.writeByte(leading << 4 | trailing);
+        for(int i = 7 - leading; i >= trailing; i--){
+            out.writeByte((int)(xor >>> (i * 8)));
+        }
+    }
+
+    private static long readXor(DataInputStream in) throws IOException {
+        int header = in.readUnsignedByte();
+        int leading = header >> 4;
+        int trailing = header & 0xF;
+        if(leading + trailing > 8){
+            throw new IOException("Bad double in telemetry block");
+        }
+        long xor = 0;
+        for(int i = 7 - leading; i >= trailing; i--){
+            xor |= (long)in.readUnsignedByte() << (i * 8);
+        }
+        return xor;
+    }
+}
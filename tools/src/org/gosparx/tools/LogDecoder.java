@@ -0,0 +1,125 @@
+package org.gosparx.tools;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import org.gosparx.util.LogFormatter;
+
+/**
+ * Desktop decoder for the binary logs written by the LogWriter. Prints each
+ * message as the text line the robot used to write.
+ *
+ * Usage: java org.gosparx.tools.LogDecoder log0.bin [log1.bin ...]
+ */
+public class LogDecoder {
+
+    private final String[] subsystems = new String[256];
+    private final String[] templates = new String[65536];
+    private final int[][] templateTypes = new int[65536][];
+    private final LogFormatter formatter = new LogFormatter();
+
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0){
+            System.err.println("Usage: java org.gosparx.tools.LogDecoder log0.bin [log1.bin ...]");
+            System.exit(1);
+        }
+        for(int i = 0; i < args.length; i++){
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args[i])));
+            try{
+                new LogDecoder().decode(in, System.out);
+            }finally{
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Prints every message in a log.
+     * @param in - the log, from the start
+     * @param out - where to print the messages
+     * @return the number of messages printed
+     * @throws IOException if the log could not be read or is not a log
+     */
+    public int decode(DataInputStream in, PrintStream out) throws IOException {
+        for(int i = 0; i < LogFormatter.LOG_MAGIC.length(); i++){
+            if(in.read() != LogFormatter.LOG_MAGIC.charAt(i)){
+                throw new IOException("Not a binary log");
+            }
+        }
+        int version = in.read();
+        if(version != LogFormatter.LOG_VERSION){
+            throw new IOException("Unknown log version " + version);
+        }
+        int messages = 0;
+        while(true){
+            int type = in.read();
+            if(type == -1){
+                return messages;
+            }
+            try{
+                if(type == LogFormatter.RECORD_SUBSYSTEM){
+                    subsystems[in.readUnsignedByte()] = readText(in);
+                }else if(type == LogFormatter.RECORD_TEMPLATE){
+                    int id = in.readUnsignedShort();
+                    templates[id] = readText(in);
+                    templateTypes[id] = LogFormatter.argTypes(templates[id]);
+                }else if(type == LogFormatter.RECORD_MESSAGE){
+                    out.println(readMessage(in));
+                    messages++;
+                }else{
+                    throw new IOException("Unknown record type " + type + " after " + messages + " messages");
+                }
+            }catch(EOFException e){
+                //The robot was turned off in the middle of a record
+                out.println("(log ends in the middle of a record)");
+                return messages;
+            }
+        }
+    }
+
+    private String readMessage(DataInputStream in) throws IOException {
+        int template = in.readUnsignedShort();
+        int subsystem = in.readUnsignedByte();
+        int levelAndMode = in.readUnsignedByte();
+        int time = in.readInt();
+        if(templates[template] == null){
+            throw new IOException("Message uses template " + template + " before it was defined");
+        }
+        int[] types = templateTypes[template];
+        double[] args = new double[types.length];
+        String text = null;
+        int argCount = 0;
+        for(int i = 0; i < types.length; i++){
+            switch(types[i]){
+                case LogFormatter.ARG_TEXT:
+                    text = readText(in);
+                    break;
+                case LogFormatter.ARG_INT:
+                    args[argCount++] = in.readInt();
+                    break;
+                case LogFormatter.ARG_BOOLEAN:
+                    args[argCount++] = in.readUnsignedByte();
+                    break;
+                default:
+                    args[argCount++] = in.readDouble();
+                    break;
+            }
+        }
+        String name = subsystems[subsystem] == null ? "?" : subsystems[subsystem];
+        formatter.startLine(levelAndMode >> 4, time, levelAndMode & 0xF, name);
+        formatter.appendMessage(templates[template], args, argCount, text);
+        return formatter.toString();
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int length = in.readUnsignedShort();
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++){
+            chars[i] = (char)in.readUnsignedByte();
+        }
+        return new String(chars);
+    }
+}
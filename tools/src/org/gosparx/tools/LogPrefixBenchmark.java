@@ -0,0 +1,73 @@
+package org.gosparx.tools;
+
+import java.lang.management.ManagementFactory;
+import org.gosparx.util.LogFormatter;
+
+/**
+ * Desktop micro-benchmark of formatting a log line. "Before" is the String
+ * building the Logger did in logMessage() and logError() on the calling
+ * thread, with Math.pow standing in for MathUtils.pow. "After" is
+ * {@link LogFormatter}, which the LogWriter now uses with one reusable
+ * buffer. Reports nanoseconds and bytes allocated per call.
+ *
+ * Usage: java org.gosparx.tools.LogPrefixBenchmark [calls]
+ */
+public class LogPrefixBenchmark {
+
+    private static final int DIGITS_IN_TIME = 8;
+    private static final int PRECISION = 4;
+    private static final String MESSAGE = "Auto Waiting for Drives";
+
+    /**
+     * Keeps the JIT from removing the work.
+     */
+    private static long sink = 0;
+
+    public static void main(String[] args){
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        LogFormatter formatter = new LogFormatter();
+        for(int round = 0; round < 3; round++){
+            long allocStart = allocated();
+            long start = System.nanoTime();
+            for(int i = 0; i < calls; i++){
+                sink += before(i * 0.0013, "Drive").length();
+            }
+            report("Before", calls, System.nanoTime() - start, allocated() - allocStart);
+
+            allocStart = allocated();
+            start = System.nanoTime();
+            for(int i = 0; i < calls; i++){
+                formatter.startLine(LogFormatter.LEVEL_DEBUG, (int)(i * 0.0013 * 10000), 2, "Drive");
+                formatter.append(MESSAGE);
+                sink += formatter.getLength();
+            }
+            report("After ", calls, System.nanoTime() - start, allocated() - allocStart);
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * The old Logger.logMessage() formatting.
+     */
+    private static String before(double time, String subsystem){
+        String mode = "Tel";
+        time *= Math.pow(10, PRECISION);
+        int timeInt = (int)time;
+        String timeToFormat = "" + timeInt;
+        String timeFormatted = timeToFormat;
+        if(timeToFormat.length() <= DIGITS_IN_TIME){
+            timeFormatted = "0000000000000000".substring(0, DIGITS_IN_TIME - timeToFormat.length()) + timeInt;
+        }
+        timeFormatted = timeFormatted.substring(0, timeFormatted.length() - PRECISION) + "." + timeFormatted.substring(timeFormatted.length() - PRECISION);
+        String info = "(DEBUG)" + "[" + timeFormatted + "] {" + mode + "} " + subsystem + ": ";
+        return info + MESSAGE + "\n";
+    }
+
+    private static long allocated(){
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static void report(String name, int calls, long nanos, long bytes){
+        System.out.println(name + ": " + (nanos / calls) + " ns/call, " + (bytes / calls) + " bytes allocated/call");
+    }
+}
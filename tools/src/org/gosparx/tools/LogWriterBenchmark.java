@@ -0,0 +1,96 @@
+package org.gosparx.tools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.gosparx.util.BufferedLogFile;
+
+/**
+ * Desktop benchmark comparing the old LogWriter, which opened, appended to
+ * and closed the log file and rewrote the photo config for every message,
+ * with {@link BufferedLogFile} kept open for the whole run. Files on the
+ * local disk stand in for the cRIO's FileConnection.
+ *
+ * Usage: java org.gosparx.tools.LogWriterBenchmark [lines] [directory]
+ */
+public class LogWriterBenchmark {
+
+    private static final String[] SAMPLES = {
+        "[Drives]Tel 12.345: Left: 0.52 Right: 0.48 Angle: 87.3\n",
+        "[Acq  ]Tel 12.360: Pivot: 45.0 Wanted: 45.0 Mode: 2\n",
+        "[Shoot]Tel 12.371: Winch: 3.2 in Latch: closed\n",
+        "[Drives]Tel 12.385: Execute avg 412 us, max 980 us, 5000 loops\n",
+    };
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        File dir = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+        File log = new File(dir, "benchlog.txt");
+        File config = new File(dir, "benchPhotoConfig.txt");
+
+        //Warm up both paths so the JIT does not favor the second one.
+        openPerMessage(log, config, lines / 10);
+        buffered(log, lines / 10);
+
+        long start = System.nanoTime();
+        long bytes = openPerMessage(log, config, lines);
+        report("Open per message", lines, bytes, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        bytes = buffered(log, lines);
+        report("Buffered", lines, bytes, System.nanoTime() - start);
+
+        log.delete();
+        config.delete();
+    }
+
+    /**
+     * The old updateDiognosis() and updateVisionConfig() pattern.
+     */
+    private static long openPerMessage(File log, File config, int lines) throws IOException {
+        log.delete();
+        long bytes = 0;
+        for(int i = 0; i < lines; i++){
+            byte[] line = SAMPLES[i % SAMPLES.length].getBytes();
+            OutputStream out = new FileOutputStream(log, true);
+            try{
+                out.write(line);
+            }finally{
+                out.close();
+            }
+            OutputStream configOut = new FileOutputStream(config);
+            try{
+                configOut.write("7".getBytes());
+            }finally{
+                configOut.close();
+            }
+            bytes += line.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * The new LogWriter pattern, with the same buffer size and age.
+     */
+    private static long buffered(File log, int lines) throws IOException {
+        log.delete();
+        BufferedLogFile file = new BufferedLogFile(new FileOutputStream(log, true), 4096, 500000);
+        try{
+            for(int i = 0; i < lines; i++){
+                file.write(SAMPLES[i % SAMPLES.length], System.nanoTime() / 1000);
+            }
+        }finally{
+            file.close();
+        }
+        return file.getBytesWritten();
+    }
+
+    private static void report(String name, int lines, long bytes, long nanos){
+        double seconds = nanos / 1e9;
+        System.out.println(name + ": " + lines + " lines, " + bytes + " bytes in "
+                + Math.round(seconds * 1000) + " ms = "
+                + Math.round(lines / seconds) + " lines/s, "
+                + Math.round(bytes / seconds) + " bytes/s");
+    }
+}
@@ -0,0 +1,165 @@
+package org.gosparx.tools;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.gosparx.util.TelemetryBlock;
+
+/**
+ * Desktop exporter for the telemetry files written by the LogWriter. Writes
+ * one CSV per recorder next to each file, named tele&lt;n&gt;-&lt;recorder&gt;.csv,
+ * with the time in seconds and then one column per channel.
+ *
+ * Usage: java org.gosparx.tools.TelemetryExporter tele0.bin [tele1.bin ...]
+ */
+public class TelemetryExporter {
+
+    /**
+     * The channels of one recorder and the CSV it is written to.
+     */
+    private static class Recorder {
+        final List<String> names = new ArrayList<String>();
+        final List<Integer> types = new ArrayList<Integer>();
+        TelemetryBlock block;
+        PrintStream csv;
+        int rows = 0;
+    }
+
+    private final Recorder[] recorders = new Recorder[256];
+    private final String prefix;
+
+    private TelemetryExporter(String prefix){
+        this.prefix = prefix;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0){
+            System.err.println("Usage: java org.gosparx.tools.TelemetryExporter tele0.bin [tele1.bin ...]");
+            System.exit(1);
+        }
+        for(String file : args){
+            String prefix = file.endsWith(".bin") ? file.substring(0, file.length() - 4) : file;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            TelemetryExporter exporter = new TelemetryExporter(prefix);
+            try{
+                exporter.export(in);
+            }finally{
+                in.close();
+                exporter.close();
+            }
+        }
+    }
+
+    /**
+     * Writes every block in a telemetry file to the CSVs.
+     * @param in - the file, from the start
+     * @throws IOException if the file could not be read or is not telemetry
+     */
+    public void export(DataInputStream in) throws IOException {
+        for(int i = 0; i < TelemetryBlock.TELEMETRY_MAGIC.length(); i++){
+            if(in.read() != TelemetryBlock.TELEMETRY_MAGIC.charAt(i)){
+                throw new IOException("Not a telemetry file");
+            }
+        }
+        int version = in.read();
+        if(version != TelemetryBlock.TELEMETRY_VERSION){
+            throw new IOException("Unknown telemetry version " + version);
+        }
+        while(true){
+            int type = in.read();
+            if(type == -1){
+                return;
+            }
+            try{
+                if(type == TelemetryBlock.RECORD_CHANNEL){
+                    Recorder recorder = recorder(in.readUnsignedByte());
+                    int channel = in.readUnsignedByte();
+                    int channelType = in.readUnsignedByte();
+                    String name = readText(in);
+                    if(recorder.block == null && channel == recorder.names.size()){
+                        recorder.names.add(name);
+                        recorder.types.add(channelType);
+                    }
+                }else if(type == TelemetryBlock.RECORD_BLOCK){
+                    writeBlock(recorder(in.readUnsignedByte()), in);
+                }else{
+                    throw new IOException("Unknown record type " + type);
+                }
+            }catch(EOFException e){
+                //The robot was turned off in the middle of a record
+                System.err.println(prefix + ": ends in the middle of a record");
+                return;
+            }
+        }
+    }
+
+    private Recorder recorder(int id){
+        if(recorders[id] == null){
+            recorders[id] = new Recorder();
+        }
+        return recorders[id];
+    }
+
+    private void writeBlock(Recorder recorder, DataInputStream in) throws IOException {
+        if(recorder.block == null){
+            if(recorder.names.isEmpty()){
+                throw new IOException("Block before its channels");
+            }
+            int[] types = new int[recorder.types.size()];
+            for(int i = 0; i < types.length; i++){
+                types[i] = recorder.types.get(i);
+            }
+            recorder.block = new TelemetryBlock(types, types.length);
+            String first = recorder.names.get(0);
+            String name = first.indexOf('.') == -1 ? "telemetry" : first.substring(0, first.indexOf('.'));
+            recorder.csv = new PrintStream(new FileOutputStream(prefix + "-" + name + ".csv"));
+            StringBuilder header = new StringBuilder("time");
+            for(String channel : recorder.names){
+                header.append(',').append(channel);
+            }
+            recorder.csv.println(header);
+        }
+        TelemetryBlock block = recorder.block;
+        block.read(in);
+        StringBuilder line = new StringBuilder();
+        for(int row = 0; row < block.getRows(); row++){
+            line.setLength(0);
+            line.append(block.getTime(row) / 1000000.0);
+            for(int i = 0; i < recorder.names.size(); i++){
+                line.append(',');
+                double value = block.getValue(i, row);
+                if(recorder.types.get(i) == TelemetryBlock.TYPE_DOUBLE){
+                    line.append(value);
+                }else{
+                    line.append((long)value);
+                }
+            }
+            recorder.csv.println(line);
+            recorder.rows++;
+        }
+    }
+
+    private void close(){
+        for(Recorder recorder : recorders){
+            if(recorder != null && recorder.csv != null){
+                recorder.csv.close();
+                System.out.println(prefix + ": " + recorder.names.get(0).split("\\.")[0] + " " + recorder.rows + " rows");
+            }
+        }
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int length = in.readUnsignedShort();
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++){
+            chars[i] = (char)in.readUnsignedByte();
+        }
+        return new String(chars);
+    }
+}